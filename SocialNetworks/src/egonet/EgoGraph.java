@@ -6,10 +6,13 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Stack;
 
+import graph.CSRGraph;
+import graph.EgonetStats;
 import graph.Graph;
+import graph.StronglyConnectedComponents;
 import util.GraphLoader;
+import util.Metrics;
 
 /**
  * Here we find the EgoNetwork of a given node.
@@ -26,9 +29,6 @@ public class EgoGraph implements Graph {
 	// The map stores the number of the node as a key and the Node as a value.
 	private Map<Integer, Node> graphNodes;
 	
-	// Stack to store a newly added vertex.
-	Stack<Integer> nodeStack;
-	
 	// List of all edges to easily retrieve a given edge.
 	private List<Edge> graphEdges;
 	
@@ -36,7 +36,6 @@ public class EgoGraph implements Graph {
 		numNodes = 0;
 		numEdges = 0;
 		graphNodes = new HashMap<>();
-		nodeStack = new Stack<>();
 		graphEdges = new ArrayList<>();
 	}
 	
@@ -44,7 +43,6 @@ public class EgoGraph implements Graph {
 	public void addVertex(int num) {
 		// Add the vertex with label num to the nodes hashMap and increase numNodes.
 		graphNodes.put(num, new Node(num));
-		nodeStack.add(num);
 		numNodes++;
 	}
 
@@ -84,7 +82,6 @@ public class EgoGraph implements Graph {
 	 */
 	@Override
 	public Graph getEgonet(int center) {
-		long time = System.nanoTime();
 		Node centerNode = graphNodes.get(center);
 		Graph egoGraph = new EgoGraph();
 		// Add the center node
@@ -105,10 +102,18 @@ public class EgoGraph implements Graph {
 				}
 			}
 		}
-		System.out.print((double)(System.nanoTime() - time) / 1000000000);
 		return egoGraph;
 	}
 	
+	/*
+	 * Egonet statistics of the given centers, or of every vertex if 'centers'
+	 * is null, computed on a directed CSRGraph snapshot without building the
+	 * egonets.
+	 */
+	public EgonetStats getEgonetStats(int[] centers, boolean parallel) {
+		return CSRGraph.fromGraph(this, true).getEgonetStats(centers, parallel);
+	}
+	
 	/*
 	 * Returns the set of neighbors of the node with vertex label 'center'.
 	 */
@@ -122,68 +127,15 @@ public class EgoGraph implements Graph {
 		return neighbors;
 	}
 	
-	@Override
-	public List<Graph> getSCCs() {
-		Set<Integer> visited = new HashSet<>();
-		Stack<Integer> finished = new Stack<>();
-		while (!nodeStack.isEmpty()) {
-			int v = nodeStack.pop();
-			if (!visited.contains(v)) {
-				DFSVisit(this, v, visited, finished);
-			}
-		}
-		visited.clear();
-		EgoGraph reverseGraph = this.reverse();
-		List<Graph> graphList = new ArrayList<>();
-		while (!finished.isEmpty()) {
-			int w = finished.pop();
-			if (!visited.contains(w)) {
-				EgoGraph sccGraph = new EgoGraph();
-				DFSVisitReverse(sccGraph, reverseGraph, w, visited);
-				graphList.add(sccGraph);
-			}
-		}
-		return graphList;
-	}
-	
 	/*
-	 * Reverse DFS to find out the strongly connected components of the given graph.
+	 * Components are found by Tarjan's algorithm with an explicit stack over a
+	 * directed CSRGraph snapshot, in one pass and without a reversed copy of
+	 * the graph, so long paths cannot overflow the Java stack.
 	 */
-	private void DFSVisitReverse(EgoGraph scEgoGraph, EgoGraph reverseGraph, int w, Set<Integer> visited) {
-		visited.add(w);
-		scEgoGraph.addVertex(w);
-		for (int n : reverseGraph.getNeighbors(w)) {
-			if (!visited.contains(n)) {
-				DFSVisitReverse(scEgoGraph, reverseGraph, n, visited);
-			}
-		}
-	}
-	
-	/*
-	 * Depth First Search from vertex v
-	 */
-	private void DFSVisit(EgoGraph EgoGraph, int v, Set<Integer> visited, Stack<Integer> finished) {
-		visited.add(v);
-		for (int n : getNeighbors(v)) {
-			if (!visited.contains(n)) {
-				DFSVisit(EgoGraph, n, visited, finished);
-			}
-		}
-		finished.push(v);
-	}
-	
-	/*
-	 * Reverse the EgoGraph edges.
-	 */
-	private EgoGraph reverse() {
-		EgoGraph reverseGraph = new EgoGraph();
-		for (int nodeInt : graphNodes.keySet()) {
-			reverseGraph.addVertex(nodeInt);
-		}
-		for (Edge graphEdge : graphEdges) {
-			reverseGraph.addEdge(graphEdge.getToNode(), graphEdge.getFromNode());
-		}
-		return reverseGraph;
+	@Override
+	public List<Graph> getSCCs() {
+		StronglyConnectedComponents sccs = new StronglyConnectedComponents(CSRGraph.fromGraph(this, true));
+		return sccs.getComponentGraphs(EgoGraph::new);
 	}
 
 	@Override
@@ -230,12 +182,11 @@ public class EgoGraph implements Graph {
 	 * Program driver for the Finding the egonet for a given node.
 	 */
 	public static void main(String args[]) {
-		long time = System.nanoTime();
 		Graph graph = new EgoGraph();
 		GraphLoader.loadGraph(graph, "./data/facebook_ucsd.txt");
 		Graph egoNetGraph = graph.getEgonet(0);
 		System.out.println(egoNetGraph.exportGraph());
-		System.out.println((double)(System.nanoTime() - time) / 1000000000);
+		System.out.print(Metrics.report());
 	}
 
 }
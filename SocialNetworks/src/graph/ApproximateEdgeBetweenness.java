@@ -0,0 +1,484 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import util.Metrics;
+
+/**
+ * Approximate edge betweenness by running Brandes' passes from a sample of
+ * source vertices (pivots) instead of from all of them.
+ *
+ * With k pivots s_1 .. s_k drawn with probabilities p(s), the estimate of an
+ * edge is the mean of X_i = c(s_i) / p(s_i), where c(s) is the contribution
+ * of the pass from s. This is unbiased for the exact value computed by
+ * EdgeBetweenness. Pivots can be drawn uniformly or proportionally to their
+ * degree, or uniformly in growing rounds until a target accuracy is reached.
+ *
+ * Every estimate comes with a half width per edge which, with probability at
+ * least 1 - delta, bounds the error of all the edges at the same time. It is
+ * the smaller of Hoeffding's bound, which only uses the range R of the X_i,
+ * and the empirical Bernstein bound of Maurer and Pontil, which uses the
+ * sample variance of each edge and is much tighter for the many edges with
+ * small betweenness. Both are taken over the m edges with a union bound.
+ *
+ * From these intervals an Estimate tells which positions of the ranking of
+ * the edges are certain and which could swap with a neighbor.
+ */
+public class ApproximateEdgeBetweenness {
+
+	public enum Sampling {
+		// Every candidate source is equally likely.
+		UNIFORM,
+		// Sources are picked proportionally to their number of remaining edges.
+		DEGREE_WEIGHTED
+	}
+
+	// Pivots of the first round of the adaptive mode. Each round doubles it.
+	private static final int FIRST_ROUND = 32;
+
+	private final CSRGraph graph;
+	private final BfsWorkspace workspace;
+	private final SplittableRandom random;
+
+	public ApproximateEdgeBetweenness(CSRGraph graph, long seed) {
+		if (graph.isDirected()) {
+			throw new IllegalArgumentException("Edge betweenness needs an undirected graph");
+		}
+		this.graph = graph;
+		this.workspace = new BfsWorkspace(graph);
+		this.random = new SplittableRandom(seed);
+	}
+
+	/*
+	 * Estimates the betweenness of the edges not marked in 'removed' from
+	 * 'numSamples' pivots. The half widths hold with probability 1 - delta.
+	 */
+	public Estimate sample(Sampling mode, int numSamples, double delta, boolean[] removed) {
+		return sample(null, graph.getNumNodes(), mode, numSamples, delta, removed);
+	}
+
+	/*
+	 * Same as above, drawing the pivots from the first 'count' vertices of
+	 * 'candidates' (all the vertices if null). The candidates must be whole
+	 * connected components, and only the edges of those components get an
+	 * estimate.
+	 */
+	public Estimate sample(int[] candidates, int count, Sampling mode, int numSamples,
+			double delta, boolean[] removed) {
+		long begin = System.nanoTime();
+		Estimate estimate = sampleFixed(candidates, count, mode, numSamples, delta, removed);
+		finishPass(begin);
+		return estimate;
+	}
+
+	private Estimate sampleFixed(int[] candidates, int count, Sampling mode, int numSamples,
+			double delta, boolean[] removed) {
+		Pivots pivots = new Pivots(candidates, count, mode, removed);
+		Estimate estimate = new Estimate(graph.getNumEdges(), removed);
+		if (pivots.total == 0) {
+			estimate.finish(0, 0, delta);
+			return estimate;
+		}
+		for (int i = 0; i < numSamples; i++) {
+			pivots.draw(estimate, removed);
+		}
+		estimate.finish(numSamples, pivots.range, delta);
+		return estimate;
+	}
+
+	/*
+	 * Draws uniform pivots in rounds of doubling size until every edge is
+	 * within epsilon * N * (N - 1) of its exact value with probability
+	 * 1 - delta, where N is the number of candidates and N * (N - 1) is the
+	 * largest value an edge betweenness can take.
+	 *
+	 * The i-th check is made at confidence delta / 2^i so that all the checks
+	 * together still hold with 1 - delta. Hoeffding's bound at that confidence
+	 * guarantees the target after ln(4m 2^i / delta) / (2 epsilon^2) pivots,
+	 * which caps the number of rounds, but the variance based bound usually
+	 * gets there much earlier. If the cap is not below N, the exact
+	 * betweenness is computed instead.
+	 */
+	public Estimate adaptive(double epsilon, double delta, boolean[] removed) {
+		return adaptive(null, graph.getNumNodes(), epsilon, delta, removed);
+	}
+
+	public Estimate adaptive(int[] candidates, int count, double epsilon, double delta,
+			boolean[] removed) {
+		long begin = System.nanoTime();
+		Estimate estimate = sampleAdaptive(candidates, count, epsilon, delta, removed);
+		finishPass(begin);
+		return estimate;
+	}
+
+	private Estimate sampleAdaptive(int[] candidates, int count, double epsilon, double delta,
+			boolean[] removed) {
+		double maxSamples = maxSamples(epsilon, delta);
+		if (maxSamples >= count) {
+			return exact(candidates, count, removed);
+		}
+
+		Pivots pivots = new Pivots(candidates, count, Sampling.UNIFORM, removed);
+		Estimate estimate = new Estimate(graph.getNumEdges(), removed);
+		if (pivots.total == 0) {
+			estimate.finish(0, 0, delta);
+			return estimate;
+		}
+		double target = epsilon * (double) count * (count - 1);
+		int drawn = 0;
+		int round = FIRST_ROUND;
+		double roundDelta = delta;
+		while (true) {
+			int goal = (int) Math.min(maxSamples, drawn + (long) round);
+			while (drawn < goal) {
+				pivots.draw(estimate, removed);
+				drawn++;
+			}
+			roundDelta /= 2;
+			estimate.finish(drawn, pivots.range, roundDelta);
+			if (drawn >= maxSamples || estimate.maxHalfWidth() <= target) {
+				return estimate;
+			}
+			estimate.unfinish();
+			round *= 2;
+		}
+	}
+
+	/*
+	 * Number of pivots after which Hoeffding's bound alone meets the target of
+	 * adaptive(). It is the first round whose pivots, counted with those of
+	 * the rounds before it, reach hoeffdingSamples() at that round's delta.
+	 */
+	private double maxSamples(double epsilon, double delta) {
+		double drawn = 0;
+		double round = FIRST_ROUND;
+		double roundDelta = delta;
+		while (true) {
+			drawn += round;
+			roundDelta /= 2;
+			double needed = hoeffdingSamples(epsilon, roundDelta);
+			if (drawn >= needed) {
+				return needed;
+			}
+			round *= 2;
+		}
+	}
+
+	// Pivots for a Hoeffding half width of epsilon * N * (N - 1) at 1 - delta.
+	private double hoeffdingSamples(double epsilon, double delta) {
+		int m = Math.max(1, graph.getNumEdges());
+		return Math.ceil(Math.log(4.0 * m / delta) / (2 * epsilon * epsilon));
+	}
+
+	// Counts one betweenness pass, started at 'begin', in the Metrics.
+	private void finishPass(long begin) {
+		workspace.flushMetrics();
+		Metrics.record(Metrics.Timer.BETWEENNESS_PASS, System.nanoTime() - begin);
+	}
+
+	/*
+	 * Runs the pass from every candidate, giving an estimate without error.
+	 */
+	private Estimate exact(int[] candidates, int count, boolean[] removed) {
+		Estimate estimate = new Estimate(graph.getNumEdges(), removed);
+		for (int k = 0; k < count; k++) {
+			workspace.search((candidates == null) ? k : candidates[k], removed);
+			workspace.accumulate(estimate.sum, 1);
+			workspace.reset();
+		}
+		estimate.finishExact(count);
+		return estimate;
+	}
+
+	/*
+	 * The candidate sources with their cumulative sampling weights.
+	 */
+	private class Pivots {
+
+		private final int[] candidates;
+		private final int count;
+
+		// Cumulative weights for degree weighted sampling, null if uniform.
+		private final long[] cumulative;
+		private final long total;
+
+		// Largest value that a single sample X_i can take.
+		private final double range;
+
+		Pivots(int[] candidates, int count, Sampling mode, boolean[] removed) {
+			this.candidates = candidates;
+			this.count = count;
+			if (mode == Sampling.UNIFORM) {
+				cumulative = null;
+				total = count;
+				// p(s) = 1 / N and c(s) <= N - 1.
+				range = (double) count * (count - 1);
+				return;
+			}
+			int[] offsets = graph.getOffsets();
+			int[] edgeIds = graph.getEdgeIds();
+			cumulative = new long[count];
+			long sum = 0;
+			int minDegree = Integer.MAX_VALUE;
+			for (int k = 0; k < count; k++) {
+				int v = (candidates == null) ? k : candidates[k];
+				int degree = 0;
+				for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+					if (removed == null || !removed[edgeIds[i]]) {
+						degree++;
+					}
+				}
+				if (degree > 0) {
+					minDegree = Math.min(minDegree, degree);
+				}
+				sum += degree;
+				cumulative[k] = sum;
+			}
+			total = sum;
+			// p(s) = deg(s) / total and c(s) <= N - 1.
+			range = (sum == 0) ? 0 : (double) (count - 1) * sum / minDegree;
+		}
+
+		/*
+		 * Draws one pivot and adds its weighted pass to the estimate.
+		 */
+		void draw(Estimate estimate, boolean[] removed) {
+			int k;
+			double weight;
+			if (cumulative == null) {
+				k = random.nextInt(count);
+				weight = count;
+			} else {
+				// First candidate whose cumulative weight exceeds r.
+				long r = random.nextLong(total);
+				int low = 0;
+				int high = count - 1;
+				while (low < high) {
+					int mid = (low + high) >>> 1;
+					if (cumulative[mid] > r) {
+						high = mid;
+					} else {
+						low = mid + 1;
+					}
+				}
+				k = low;
+				long previous = (k == 0) ? 0 : cumulative[k - 1];
+				weight = (double) total / (cumulative[k] - previous);
+			}
+			workspace.search((candidates == null) ? k : candidates[k], removed);
+			workspace.accumulate(estimate.sum, estimate.squares, weight);
+			workspace.reset();
+		}
+	}
+
+	/**
+	 * Estimated betweenness with an error half width per edge.
+	 */
+	public static class Estimate {
+
+		// Sums of the samples and of their squares while sampling.
+		private final double[] sum;
+		private final double[] squares;
+
+		private final boolean[] removed;
+		private double[] betweenness;
+		private double[] halfWidth;
+		private int numSamples;
+		private boolean exact;
+
+		Estimate(int numEdges, boolean[] removed) {
+			this.sum = new double[numEdges];
+			this.squares = new double[numEdges];
+			this.removed = removed;
+		}
+
+		/*
+		 * Turns the sums into means and half widths at confidence 1 - delta.
+		 */
+		void finish(int k, double range, double delta) {
+			int m = sum.length;
+			numSamples = k;
+			betweenness = new double[m];
+			halfWidth = new double[m];
+			if (k == 0) {
+				return;
+			}
+			// delta / 2 for each bound, spread over the m edges.
+			double log = Math.log(4.0 * Math.max(1, m) / delta);
+			double hoeffding = range * Math.sqrt(log / (2.0 * k));
+			for (int e = 0; e < m; e++) {
+				double mean = sum[e] / k;
+				betweenness[e] = mean;
+				double width = hoeffding;
+				if (k > 1) {
+					double variance = Math.max(0, (squares[e] - k * mean * mean) / (k - 1));
+					double bernstein = Math.sqrt(2 * variance * log / k) + 7 * range * log / (3.0 * (k - 1));
+					width = Math.min(width, bernstein);
+				}
+				halfWidth[e] = width;
+			}
+		}
+
+		void finishExact(int k) {
+			numSamples = k;
+			betweenness = sum;
+			halfWidth = new double[sum.length];
+			exact = true;
+		}
+
+		// Goes back to sampling after an intermediate check.
+		void unfinish() {
+			betweenness = null;
+			halfWidth = null;
+		}
+
+		public double[] getBetweenness() {
+			return betweenness;
+		}
+
+		public double[] getHalfWidth() {
+			return halfWidth;
+		}
+
+		public int getNumSamples() {
+			return numSamples;
+		}
+
+		public boolean isExact() {
+			return exact;
+		}
+
+		double maxHalfWidth() {
+			double max = 0;
+			for (int e = 0; e < halfWidth.length; e++) {
+				if (removed == null || !removed[e]) {
+					max = Math.max(max, halfWidth[e]);
+				}
+			}
+			return max;
+		}
+
+		/*
+		 * Ids of the remaining edges by decreasing estimated betweenness.
+		 */
+		public int[] rankedEdges() {
+			int m = betweenness.length;
+			int[] ranked = new int[m];
+			int count = 0;
+			for (int e = 0; e < m; e++) {
+				if (removed == null || !removed[e]) {
+					ranked[count++] = e;
+				}
+			}
+			sortByDecreasing(ranked, 0, count - 1);
+			return (count == m) ? ranked : Arrays.copyOf(ranked, count);
+		}
+
+		// True if edge a goes before edge b: larger estimate, then smaller id.
+		private boolean before(int a, int b) {
+			int order = Double.compare(betweenness[a], betweenness[b]);
+			return (order != 0) ? order > 0 : a < b;
+		}
+
+		/*
+		 * Quicksort of ids[low..high] with before(), on the ids themselves so
+		 * that no edge is boxed. Recurses into the smaller side only.
+		 */
+		private void sortByDecreasing(int[] ids, int low, int high) {
+			while (high - low > 16) {
+				int mid = (low + high) >>> 1;
+				// Median of three as pivot.
+				if (before(ids[mid], ids[low])) {
+					swap(ids, low, mid);
+				}
+				if (before(ids[high], ids[low])) {
+					swap(ids, low, high);
+				}
+				if (before(ids[high], ids[mid])) {
+					swap(ids, mid, high);
+				}
+				int pivot = ids[mid];
+				int i = low;
+				int j = high;
+				while (i <= j) {
+					while (before(ids[i], pivot)) {
+						i++;
+					}
+					while (before(pivot, ids[j])) {
+						j--;
+					}
+					if (i <= j) {
+						swap(ids, i++, j--);
+					}
+				}
+				if (j - low < high - i) {
+					sortByDecreasing(ids, low, j);
+					low = i;
+				} else {
+					sortByDecreasing(ids, i, high);
+					high = j;
+				}
+			}
+			// Insertion sort for the short ranges.
+			for (int i = low + 1; i <= high; i++) {
+				int id = ids[i];
+				int j = i - 1;
+				while (j >= low && before(id, ids[j])) {
+					ids[j + 1] = ids[j];
+					j--;
+				}
+				ids[j + 1] = id;
+			}
+		}
+
+		private static void swap(int[] ids, int i, int j) {
+			int id = ids[i];
+			ids[i] = ids[j];
+			ids[j] = id;
+		}
+
+		/*
+		 * For each position of rankedEdges(), true if the interval of that edge
+		 * lies strictly above the intervals of all the edges ranked below it and
+		 * strictly below those of all the edges ranked above it, so its rank
+		 * cannot change. Positions where it is false are ambiguous.
+		 */
+		public boolean[] certainRanks(int[] ranked) {
+			int count = ranked.length;
+			boolean[] certain = new boolean[count];
+			// Smallest lower end among the ranks above each position.
+			double[] minLowerAbove = new double[count];
+			double lowest = Double.POSITIVE_INFINITY;
+			for (int i = 0; i < count; i++) {
+				minLowerAbove[i] = lowest;
+				int e = ranked[i];
+				lowest = Math.min(lowest, betweenness[e] - halfWidth[e]);
+			}
+			double highest = Double.NEGATIVE_INFINITY;
+			for (int i = count - 1; i >= 0; i--) {
+				int e = ranked[i];
+				double lower = betweenness[e] - halfWidth[e];
+				double upper = betweenness[e] + halfWidth[e];
+				certain[i] = lower > highest && upper < minLowerAbove[i];
+				highest = Math.max(highest, upper);
+			}
+			return certain;
+		}
+
+		/*
+		 * Number of leading positions of the ranking that are all certain,
+		 * that is how many top edges are known to be the top edges in order.
+		 */
+		public int certainTopCount() {
+			int[] ranked = rankedEdges();
+			boolean[] certain = certainRanks(ranked);
+			int top = 0;
+			while (top < certain.length && certain[top]) {
+				top++;
+			}
+			return top;
+		}
+	}
+
+}
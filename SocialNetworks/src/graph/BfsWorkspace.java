@@ -0,0 +1,170 @@
+package graph;
+
+import java.util.Arrays;
+
+import util.IntList;
+import util.Metrics;
+
+/**
+ * Reusable state for one Brandes pass (a BFS from one source followed by the
+ * 'cascade up' of the dependencies) over a CSRGraph.
+ *
+ * Everything is kept in primitive arrays sized once for the graph:
+ * depth, number of shortest paths (sigma) and dependency (delta) per vertex,
+ * an array backed queue which also records the BFS order, and the
+ * predecessors of every vertex in CSR form. The predecessors of w are a
+ * subset of its neighbors, so they fit in w's own row of the graph:
+ * predEdges[offsets[w]] .. predEdges[offsets[w] + predCount[w] - 1] hold the
+ * ids of the edges leading to w from the level above.
+ *
+ * After a pass only the vertices that were visited are cleared, so a pass
+ * from a source in a small component costs the size of that component and
+ * not the size of the whole graph. A workspace is not thread safe; every
+ * thread uses its own.
+ */
+class BfsWorkspace {
+
+	private final CSRGraph graph;
+
+	final int[] depth;
+	final double[] sigma;
+	final double[] delta;
+
+	// Vertices in BFS order. Read backwards it is the 'cascade up' order.
+	final int[] order;
+	int numVisited;
+
+	private final int[] predEdges;
+	private final int[] predCount;
+
+	// Vertices reached and arcs looked at since the last flushMetrics().
+	private long visitedCount;
+	private long scannedCount;
+
+	BfsWorkspace(CSRGraph graph) {
+		int n = graph.getNumNodes();
+		this.graph = graph;
+		depth = new int[n];
+		sigma = new double[n];
+		delta = new double[n];
+		order = new int[n];
+		predEdges = new int[graph.getNumArcs()];
+		predCount = new int[n];
+		Arrays.fill(depth, -1);
+	}
+
+	/*
+	 * Breadth First Search from s over the edges not marked in 'removed'
+	 * (which may be null), counting shortest paths and recording predecessors.
+	 */
+	void search(int s, boolean[] removed) {
+		int[] offsets = graph.getOffsets();
+		int[] targets = graph.getTargets();
+		int[] edgeIds = graph.getEdgeIds();
+
+		depth[s] = 0;
+		sigma[s] = 1;
+		order[0] = s;
+		int head = 0;
+		int tail = 1;
+		while (head < tail) {
+			int v = order[head++];
+			int next = depth[v] + 1;
+			scannedCount += offsets[v + 1] - offsets[v];
+			for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+				int e = edgeIds[i];
+				if (removed != null && removed[e]) {
+					continue;
+				}
+				int w = targets[i];
+				if (depth[w] < 0) {
+					depth[w] = next;
+					order[tail++] = w;
+				}
+				if (depth[w] == next) {
+					sigma[w] += sigma[v];
+					predEdges[offsets[w] + predCount[w]++] = e;
+				}
+			}
+		}
+		numVisited = tail;
+		visitedCount += tail;
+	}
+
+	/*
+	 * Adds the vertices and arcs of the searches since the last call to the
+	 * process wide Metrics, once per batch of sources rather than per search.
+	 */
+	void flushMetrics() {
+		Metrics.add(Metrics.Counter.BFS_VERTICES, visitedCount);
+		Metrics.add(Metrics.Counter.EDGES_RELAXED, scannedCount);
+		visitedCount = 0;
+		scannedCount = 0;
+	}
+
+	/*
+	 * Cascades the dependencies up from the farthest vertices of the last
+	 * search and adds the contribution of every edge, times 'weight', to
+	 * 'betweenness'.
+	 */
+	void accumulate(double[] betweenness, double weight) {
+		accumulate(betweenness, null, weight);
+	}
+
+	/*
+	 * Same as accumulate(betweenness, weight), also adding the square of each
+	 * weighted contribution to 'squares' if it is not null. An edge gets at
+	 * most one contribution per source, so these are the squared per-source
+	 * samples that the sampling estimators need for their variance.
+	 */
+	void accumulate(double[] betweenness, double[] squares, double weight) {
+		accumulate(betweenness, squares, null, weight);
+	}
+
+	/*
+	 * Same as accumulate(betweenness, 1), also appending to 'touched' every
+	 * edge whose entry in 'betweenness' was still 0. Every contribution is
+	 * positive, so over several searches each edge is appended once.
+	 */
+	void accumulate(double[] betweenness, IntList touched) {
+		accumulate(betweenness, null, touched, 1);
+	}
+
+	private void accumulate(double[] betweenness, double[] squares, IntList touched, double weight) {
+		int[] offsets = graph.getOffsets();
+		for (int k = numVisited - 1; k > 0; k--) {
+			int w = order[k];
+			double coefficient = (1 + delta[w]) / sigma[w];
+			int start = offsets[w];
+			for (int i = start; i < start + predCount[w]; i++) {
+				int e = predEdges[i];
+				int v = graph.edgeSource(e) == w ? graph.edgeTarget(e) : graph.edgeSource(e);
+				double value = sigma[v] * coefficient;
+				delta[v] += value;
+				double sample = weight * value;
+				if (touched != null && betweenness[e] == 0) {
+					touched.add(e);
+				}
+				betweenness[e] += sample;
+				if (squares != null) {
+					squares[e] += sample * sample;
+				}
+			}
+		}
+	}
+
+	/*
+	 * Clears the state of the vertices visited by the last search.
+	 */
+	void reset() {
+		for (int k = 0; k < numVisited; k++) {
+			int v = order[k];
+			depth[v] = -1;
+			sigma[v] = 0;
+			delta[v] = 0;
+			predCount[v] = 0;
+		}
+		numVisited = 0;
+	}
+
+}
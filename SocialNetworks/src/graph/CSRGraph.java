@@ -0,0 +1,492 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import util.IntList;
+
+/**
+ * Immutable compressed sparse row (CSR) graph.
+ *
+ * Vertices are relabelled to dense ids 0..n-1 in ascending order of their
+ * labels. The neighbors of the dense vertex v are stored, sorted, in
+ * targets[offsets[v]] .. targets[offsets[v + 1] - 1], so the whole adjacency
+ * structure is two int arrays instead of a map of Node objects each holding
+ * a list of boxed Edges.
+ *
+ * Every edge also has a dense id in 0..m-1. In an undirected graph an edge
+ * is stored in the rows of both its end points and both copies carry the
+ * same id in edgeIds, so per-edge values such as betweenness can be kept in
+ * a plain double[] indexed by edge id.
+ *
+ * Self loops and repeated edges are dropped while building.
+ */
+public class CSRGraph implements ReadableGraph {
+
+	private final boolean directed;
+
+	// Dense vertex id -> vertex label, ascending.
+	private final int[] labels;
+
+	// Row i of the adjacency spans targets[offsets[i]] .. targets[offsets[i + 1] - 1].
+	private final int[] offsets;
+	private final int[] targets;
+
+	// Edge id of every entry of targets.
+	private final int[] edgeIds;
+
+	// Dense end points of every edge, indexed by edge id.
+	private final int[] edgeSources;
+	private final int[] edgeTargets;
+
+	private CSRGraph(boolean directed, int[] labels, int[] offsets, int[] targets,
+			int[] edgeIds, int[] edgeSources, int[] edgeTargets) {
+		this.directed = directed;
+		this.labels = labels;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.edgeIds = edgeIds;
+		this.edgeSources = edgeSources;
+		this.edgeTargets = edgeTargets;
+	}
+
+	/*
+	 * Builds a graph from the first 'count' edges from[i] -> to[i]. The vertex
+	 * set is the set of labels that appear in the edge list.
+	 */
+	public static CSRGraph fromEdges(int[] from, int[] to, int count, boolean directed) {
+		return fromEdges(null, 0, from, to, count, directed);
+	}
+
+	/*
+	 * Builds a graph from the first 'count' edges from[i] -> to[i], plus the
+	 * first 'numVertices' labels of 'vertices', which may contain vertices
+	 * without any edge. 'vertices' may be null.
+	 */
+	public static CSRGraph fromEdges(int[] vertices, int numVertices, int[] from, int[] to,
+			int count, boolean directed) {
+		/*
+		 * Collect every label, sort and remove duplicates to get the
+		 * dense id -> label table.
+		 */
+		int[] all = new int[numVertices + 2 * count];
+		if (vertices != null) {
+			System.arraycopy(vertices, 0, all, 0, numVertices);
+		}
+		System.arraycopy(from, 0, all, numVertices, count);
+		System.arraycopy(to, 0, all, numVertices + count, count);
+		Arrays.parallelSort(all);
+		int n = 0;
+		for (int i = 0; i < all.length; i++) {
+			if (n == 0 || all[i] != all[n - 1]) {
+				all[n++] = all[i];
+			}
+		}
+		int[] labels = Arrays.copyOf(all, n);
+		all = null;
+
+		// Translate the edge list to dense ids, dropping self loops.
+		int[] src = new int[count];
+		int[] dst = new int[count];
+		int kept = 0;
+		for (int i = 0; i < count; i++) {
+			int u = Arrays.binarySearch(labels, from[i]);
+			int v = Arrays.binarySearch(labels, to[i]);
+			if (u != v) {
+				src[kept] = u;
+				dst[kept] = v;
+				kept++;
+			}
+		}
+		return fromDenseEdges(labels, src, dst, kept, directed);
+	}
+
+	/*
+	 * Builds a graph over the given (ascending, duplicate free) labels from
+	 * an edge list that is already expressed in dense ids.
+	 */
+	static CSRGraph fromDenseEdges(int[] labels, int[] src, int[] dst, int count, boolean directed) {
+		int n = labels.length;
+
+		// Count the row sizes, storing an undirected edge in both rows.
+		int[] offsets = new int[n + 1];
+		for (int i = 0; i < count; i++) {
+			offsets[src[i] + 1]++;
+			if (!directed) {
+				offsets[dst[i] + 1]++;
+			}
+		}
+		for (int v = 0; v < n; v++) {
+			offsets[v + 1] += offsets[v];
+		}
+
+		// Scatter the edges into their rows.
+		int[] targets = new int[offsets[n]];
+		int[] fill = Arrays.copyOf(offsets, n);
+		for (int i = 0; i < count; i++) {
+			targets[fill[src[i]]++] = dst[i];
+			if (!directed) {
+				targets[fill[dst[i]]++] = src[i];
+			}
+		}
+		fill = null;
+
+		// Sort every row and squeeze out repeated edges.
+		int write = 0;
+		int rowStart = 0;
+		for (int v = 0; v < n; v++) {
+			int rowEnd = offsets[v + 1];
+			Arrays.sort(targets, rowStart, rowEnd);
+			offsets[v] = write;
+			for (int i = rowStart; i < rowEnd; i++) {
+				if (i == rowStart || targets[i] != targets[i - 1]) {
+					targets[write++] = targets[i];
+				}
+			}
+			rowStart = rowEnd;
+		}
+		offsets[n] = write;
+		if (write < targets.length) {
+			targets = Arrays.copyOf(targets, write);
+		}
+
+		/*
+		 * Number the edges. A directed edge is identified by its position in
+		 * targets. An undirected edge gets its id when it is met from its lower
+		 * end point and the upper end point looks the id up in the lower row.
+		 */
+		int numArcs = targets.length;
+		int numEdges = directed ? numArcs : numArcs / 2;
+		int[] edgeIds = new int[numArcs];
+		int[] edgeSources = new int[numEdges];
+		int[] edgeTargets = new int[numEdges];
+		int next = 0;
+		for (int v = 0; v < n; v++) {
+			for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+				int w = targets[i];
+				if (directed || v < w) {
+					edgeIds[i] = next;
+					edgeSources[next] = v;
+					edgeTargets[next] = w;
+					next++;
+				} else {
+					int j = Arrays.binarySearch(targets, offsets[w], offsets[w + 1], v);
+					edgeIds[i] = edgeIds[j];
+				}
+			}
+		}
+		return new CSRGraph(directed, labels, offsets, targets, edgeIds, edgeSources, edgeTargets);
+	}
+
+	/*
+	 * Takes an immutable snapshot of any Graph through its exportGraph view.
+	 */
+	public static CSRGraph fromGraph(Graph graph, boolean directed) {
+		HashMap<Integer, HashSet<Integer>> export = graph.exportGraph();
+		int[] vertices = new int[export.size()];
+		int numArcs = 0;
+		int k = 0;
+		for (Map.Entry<Integer, HashSet<Integer>> entry : export.entrySet()) {
+			vertices[k++] = entry.getKey();
+			numArcs += entry.getValue().size();
+		}
+		int[] from = new int[numArcs];
+		int[] to = new int[numArcs];
+		int i = 0;
+		for (Map.Entry<Integer, HashSet<Integer>> entry : export.entrySet()) {
+			for (int neighbor : entry.getValue()) {
+				from[i] = entry.getKey();
+				to[i] = neighbor;
+				i++;
+			}
+		}
+		return fromEdges(vertices, vertices.length, from, to, numArcs, directed);
+	}
+
+	/*
+	 * The graph as an undirected CSRGraph, converting it only if it is not
+	 * one already.
+	 */
+	public static CSRGraph toUndirected(ReadableGraph graph) {
+		if (graph instanceof CSRGraph && !((CSRGraph) graph).isDirected()) {
+			return (CSRGraph) graph;
+		}
+		if (graph instanceof CapGraph) {
+			return ((CapGraph) graph).toCSRGraph();
+		}
+		if (graph instanceof MappedGraph && !((MappedGraph) graph).isDirected()) {
+			return ((MappedGraph) graph).toCSRGraph();
+		}
+		return fromGraph(graph, false);
+	}
+
+	@Override
+	public void addVertex(int num) {
+		throw new UnsupportedOperationException("CSRGraph is immutable");
+	}
+
+	@Override
+	public void addEdge(int from, int to) {
+		throw new UnsupportedOperationException("CSRGraph is immutable");
+	}
+
+	public boolean isDirected() {
+		return directed;
+	}
+
+	@Override
+	public int getNumNodes() {
+		return labels.length;
+	}
+
+	@Override
+	public int getNumEdges() {
+		return edgeSources.length;
+	}
+
+	/*
+	 * Number of adjacency entries, which is twice the number of edges
+	 * in an undirected graph.
+	 */
+	public int getNumArcs() {
+		return targets.length;
+	}
+
+	/*
+	 * Hash of the labels, the adjacency and the edge ids, so that state saved
+	 * for one graph, such as a checkpoint, is not applied to another. Two
+	 * graphs built from the same file in the same way have the same value.
+	 */
+	public long fingerprint() {
+		long h = directed ? 1 : 0;
+		h = hash(h, labels);
+		h = hash(h, offsets);
+		h = hash(h, targets);
+		h = hash(h, edgeSources);
+		return hash(h, edgeTargets);
+	}
+
+	private static long hash(long h, int[] values) {
+		h = h * 0x9E3779B97F4A7C15L + values.length;
+		for (int value : values) {
+			h = (h ^ value) * 0x100000001B3L;
+		}
+		return h;
+	}
+
+	/*
+	 * Dense id of the vertex with the given label or -1 if there is none.
+	 */
+	public int indexOf(int label) {
+		int v = Arrays.binarySearch(labels, label);
+		return (v < 0) ? -1 : v;
+	}
+
+	/*
+	 * Label of the vertex with dense id v.
+	 */
+	public int labelOf(int v) {
+		return labels[v];
+	}
+
+	public int degree(int v) {
+		return offsets[v + 1] - offsets[v];
+	}
+
+	/*
+	 * The arrays below are the internal storage of the graph and are handed
+	 * out without copying for the algorithms that scan them. Do not modify.
+	 */
+	public int[] getLabels() {
+		return labels;
+	}
+
+	public int[] getOffsets() {
+		return offsets;
+	}
+
+	public int[] getTargets() {
+		return targets;
+	}
+
+	public int[] getEdgeIds() {
+		return edgeIds;
+	}
+
+	/*
+	 * Dense end points of the edge with the given id. For an undirected
+	 * edge the source is the end point with the lower id.
+	 */
+	public int edgeSource(int edgeId) {
+		return edgeSources[edgeId];
+	}
+
+	public int edgeTarget(int edgeId) {
+		return edgeTargets[edgeId];
+	}
+
+	/*
+	 * Id of the edge between the dense vertices u and v, or -1 if they are
+	 * not adjacent. Binary search in the row of u, so O(log deg(u)).
+	 */
+	public int edgeId(int u, int v) {
+		int i = Arrays.binarySearch(targets, offsets[u], offsets[u + 1], v);
+		return (i < 0) ? -1 : edgeIds[i];
+	}
+
+	@Override
+	public boolean isEdge(int i, int j) {
+		int u = indexOf(i);
+		int v = indexOf(j);
+		if (u < 0 || v < 0) {
+			return false;
+		}
+		return edgeId(u, v) >= 0 || (directed && edgeId(v, u) >= 0);
+	}
+
+	@Override
+	public Set<Integer> getNodes() {
+		Set<Integer> nodes = new HashSet<>();
+		for (int label : labels) {
+			nodes.add(label);
+		}
+		return nodes;
+	}
+
+	@Override
+	public Set<Integer> getNeighbors(int center) {
+		Set<Integer> neighbors = new HashSet<>();
+		int c = indexOf(center);
+		if (c >= 0) {
+			for (int i = offsets[c]; i < offsets[c + 1]; i++) {
+				neighbors.add(labels[targets[i]]);
+			}
+		}
+		return neighbors;
+	}
+
+	/* (non-Javadoc)
+	 * @see graph.Graph#getEgonet(int)
+	 * The egonet holds the center, its neighbors, the edges from the center
+	 * and every edge between two neighbors. Rows are sorted, so the edges
+	 * between neighbors are found by merging each neighbor's row with the
+	 * row of the center.
+	 */
+	@Override
+	public Graph getEgonet(int center) {
+		int c = indexOf(center);
+		if (c < 0) {
+			return null;
+		}
+		int start = offsets[c];
+		int end = offsets[c + 1];
+
+		int[] vertices = new int[end - start + 1];
+		vertices[0] = c;
+		System.arraycopy(targets, start, vertices, 1, end - start);
+		Arrays.sort(vertices);
+
+		IntList src = new IntList();
+		IntList dst = new IntList();
+		for (int i = start; i < end; i++) {
+			int u = targets[i];
+			src.add(c);
+			dst.add(u);
+			int a = offsets[u];
+			int b = start;
+			while (a < offsets[u + 1] && b < end) {
+				if (targets[a] < targets[b]) {
+					a++;
+				} else if (targets[a] > targets[b]) {
+					b++;
+				} else {
+					src.add(u);
+					dst.add(targets[a]);
+					a++;
+					b++;
+				}
+			}
+		}
+		return subgraph(vertices, src, dst);
+	}
+
+	/*
+	 * Size, edge count and density of the egonets of the given center labels,
+	 * or of every vertex if 'centers' is null, without building the egonets.
+	 * Optionally computed in parallel on the common ForkJoinPool.
+	 */
+	public EgonetStats getEgonetStats(int[] centers, boolean parallel) {
+		int[] dense = null;
+		if (centers != null) {
+			dense = new int[centers.length];
+			for (int i = 0; i < centers.length; i++) {
+				dense[i] = indexOf(centers[i]);
+				if (dense[i] < 0) {
+					throw new IllegalArgumentException("No vertex " + centers[i]);
+				}
+			}
+		}
+		return new EgonetStats(this, dense, parallel ? ForkJoinPool.commonPool() : null);
+	}
+
+	/*
+	 * Builds the graph over the given ascending dense vertices from edges
+	 * given in dense ids of this graph.
+	 */
+	private CSRGraph subgraph(int[] vertices, IntList src, IntList dst) {
+		int[] subLabels = new int[vertices.length];
+		for (int i = 0; i < vertices.length; i++) {
+			subLabels[i] = labels[vertices[i]];
+		}
+		int[] subSrc = new int[src.size()];
+		int[] subDst = new int[dst.size()];
+		for (int i = 0; i < src.size(); i++) {
+			subSrc[i] = Arrays.binarySearch(vertices, src.get(i));
+			subDst[i] = Arrays.binarySearch(vertices, dst.get(i));
+		}
+		return fromDenseEdges(subLabels, subSrc, subDst, subSrc.length, directed);
+	}
+
+	/*
+	 * Returns the strongly connected components as induced subgraphs.
+	 * In an undirected graph these are the connected components.
+	 */
+	@Override
+	public List<Graph> getSCCs() {
+		return getSCCs(false);
+	}
+
+	/*
+	 * Same as getSCCs(), optionally finding the components in parallel on the
+	 * common ForkJoinPool. The result is the same in both modes.
+	 */
+	public List<Graph> getSCCs(boolean parallel) {
+		ForkJoinPool pool = parallel ? ForkJoinPool.commonPool() : null;
+		StronglyConnectedComponents sccs = new StronglyConnectedComponents(this, pool);
+		List<Graph> graphList = new ArrayList<>(sccs.getNumComponents());
+		for (int c = 0; c < sccs.getNumComponents(); c++) {
+			graphList.add(sccs.getComponentGraph(c));
+		}
+		return graphList;
+	}
+
+	@Override
+	public HashMap<Integer, HashSet<Integer>> exportGraph() {
+		HashMap<Integer, HashSet<Integer>> mapGraph = new HashMap<>();
+		for (int v = 0; v < labels.length; v++) {
+			HashSet<Integer> neighbors = new HashSet<>();
+			for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+				neighbors.add(labels[targets[i]]);
+			}
+			mapGraph.put(labels[v], neighbors);
+		}
+		return mapGraph;
+	}
+
+}
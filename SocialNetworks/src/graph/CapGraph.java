@@ -1,23 +1,22 @@
 package graph;
 
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
-import java.util.Stack;
+import java.util.concurrent.ForkJoinPool;
 
 import util.GraphLoader;
+import util.PartitionSink;
 
 /**
  * CapGraph implementation class.
  * 
  * @author Bhargav Ram K S.
  */
-public class CapGraph implements Graph {
+public class CapGraph implements ReadableGraph {
 	
 	// Number of Nodes and edges in our graph.
 	private int numNodes;
@@ -27,200 +26,195 @@ public class CapGraph implements Graph {
 	// The map stores the number of the node as a key and the Node as a value.
 	private Map<Integer, Node> graphNodes;
 	
-	// Stack to store a newly added vertex.
-	Stack<Integer> nodeStack;
+	// Undirected CSRGraph of the current edges, or null until it is asked for
+	// again after a change.
+	private CSRGraph snapshot;
 	
-	// List of all edges to easily retrieve a given edge.
-	private Set<Edge> graphEdges;
+	// To store the edge-betweenness of the last pass, indexed by the edge ids of
+	// the snapshot it ran on, or null before the first pass.
+	private double[] edgeBetweenness;
+	private CSRGraph betweennessGraph;
 	
-	// To store the edge-betweenness for all edges of CapGraph
-	private Map<Edge, Double> edgeBetweennessMap;
+	// Egonets returned by getEgonet, or null if caching is off.
+	private EgonetCache egonetCache;
 	
 	public CapGraph() {
 		numNodes = 0;
 		numEdges = 0;
 		graphNodes = new HashMap<>();
-		nodeStack = new Stack<>();
-		graphEdges = new HashSet<>();
-		edgeBetweennessMap = new HashMap<>();
 	}
 
 	@Override
 	public void addVertex(int num) {
 		// Add the vertex with label num to the nodes hashMap and increase numNodes.
 		graphNodes.put(num, new Node(num));
-		nodeStack.add(num);
 		numNodes++;
+		snapshot = null;
+		if (egonetCache != null) {
+			egonetCache.invalidate(num);
+		}
 	}
 	
 	/*
-	 * Calculates the edge-betweenness for all the edges of the CapGraph and stores it in a hashMap
-	 *  -- edgeBetweennessMap
+	 * Calculates the edge-betweenness for all the edges of the CapGraph and stores it in an array
+	 *  -- edgeBetweenness, indexed by the edge ids of toCSRGraph()
 	 *  
 	 * Edge Betweenness(EB) is defined as the fraction of shortest paths between two distinct vertices 
 	 * in a graph which 'flow' through a given edge. A high edge-betweenness measure is an indication 
 	 * that the edge is a crucial edge and it links two closely connected communities.
 	 */
 	public void edgeBetweenness() {
-		/*
-		 * We reset the values of edge-betweenness for all the existing edges of the graph
-		 * as an initialization step. After each step of calculating the betweenness and removing 
-		 * the edge with highest edge-betweenness measure, we start over and calculate again 
-		 * in order to give better results for the community structure.
-		 */
-		for (Edge graphEdge : graphEdges) {
-			edgeBetweennessMap.put(graphEdge, 0.0);
-		}
+		edgeBetweenness(false);
+	}
+	
+	/*
+	 * Same as edgeBetweenness(), optionally spreading the Breadth First Searches
+	 * from the different source vertices over the common ForkJoinPool.
+	 * 
+	 * The BFS and the 'cascade up' of the contributions run in EdgeBetweenness
+	 * over the CSRGraph snapshot of toCSRGraph(), which keeps every per-vertex
+	 * value in a primitive array and is only rebuilt after the graph changed.
+	 */
+	public void edgeBetweenness(boolean parallel) {
+		edgeBetweenness(parallel, null);
+	}
+	
+	/*
+	 * Same as edgeBetweenness(parallel), giving up with a CancellationException
+	 * once 'control' (which may be null) is stopped. The betweenness of the
+	 * last complete pass is kept then.
+	 */
+	public void edgeBetweenness(boolean parallel, RunControl control) {
+		CSRGraph graph = toCSRGraph();
+		ForkJoinPool pool = parallel ? ForkJoinPool.commonPool() : null;
+		EdgeBetweenness pass = new EdgeBetweenness(graph, pool);
+		pass.setRunControl(control);
 		
 		/*
-		 * We do a Breadth First Search from each of the vertices and then calculate the
-		 * contribution towards edge betweenness for each of the edges from all the shortest
-		 * paths starting at the Node graphNode and ending at all the nodes which are
-		 * 'connected' to the graphNode or reachable from graphNode
+		 * We replace the values of edge-betweenness for all the existing edges of the graph
+		 * with the freshly computed ones. After each step of calculating the betweenness and
+		 * removing the edge with highest edge-betweenness measure, we start over and calculate
+		 * again in order to give better results for the community structure.
 		 */
-		for (Node graphNode : graphNodes.values()) {			
-			// vertexStack stores each of the vertices from the lowest or nearest
-			// level to the last or farthest level so that when we compute the 
-			// betweenness contribution we start from the vertices of the largest level
-			// and 'cascade up' till the source vertex going level by level nearer.
-			Stack<Node> vertexStack = new Stack<>();
-			
-			/*
-			 * pMap stores the list of predecessors of each vertex in the BFS Tree
-			 * starting at the node GraphNode.
-			 */
-			Map<Integer, List<Node>> pMap = new HashMap<>();
-			
-			/*
-			 * Keeps track of number of shortest paths to each vertex as BFS progresses
-			 * key - Node number; value : number of shortest paths.
-			 */
-			Map<Integer, Integer> shortestPathCount = new HashMap<>();
-			
-			/*
-			 * Keeps track of the 'depth' or the 'level' of each vertex from the graphNode
-			 * as the BFS progresses.
-			 */
-			Map<Integer, Integer> depth = new HashMap<>();
-			
-			/*
-			 * Initialization of data structures required to compute edge betweenness
-			 */
-			for (int key : graphNodes.keySet()) {
-				shortestPathCount.put(key, 0);
-				depth.put(key, -1);
-				pMap.put(key, new ArrayList<>());
-			}
-			// graphNode being the source node has only 1 shortest path to itself.
-			shortestPathCount.put(graphNode.getLabel(), 1);
-			
-			// graphNode is at the depth or level 0 from itself.
-			depth.put(graphNode.getLabel(), 0);
-			
-			// BFS starts from node graphNode.
-			Queue<Node> q = new LinkedList<>();
-			q.add(graphNode);
-			while (!q.isEmpty()) {
-				Node v = q.remove();
-				vertexStack.push(v);
-				for (Edge w : v.getAdjList()) {
-					
-					// get the other end of the edge w where one node
-					// of the edge is v and the other node is otherVertex
-					int otherVertex = (w.getFromNode() == v.getLabel()) ? w.getToNode() : w.getFromNode();
-					
-					// Adds the unexplored vertex to the queue and sets 
-					// it's level  to one higher than its predecessor v
-					if (depth.get(otherVertex) < 0) {
-						q.add(graphNodes.get(otherVertex));
-						depth.put(otherVertex, depth.get(v.getLabel()) + 1);
-					}
-					
-					// In case v is the predecessor of vertex otherVertex, we set the 
-					// increment the shortest path count of vertex otherVertex by that
-					// of the predecessor v
-					if (depth.get(otherVertex) == depth.get(v.getLabel()) + 1) {
-						shortestPathCount.put(otherVertex, 
-											shortestPathCount.get(otherVertex) + shortestPathCount.get(v.getLabel()));
-						
-						/*
-						 * We add the node v to the list of predecessors of the vertex otherVertex.
-						 *  This step is crucial in order to 'cascade' up from lowest depth 
-						 *  towards source while calculating the betweenness contribution.
-						 */
-						pMap.get(otherVertex).add(v);
+		edgeBetweenness = pass.compute(null);
+		betweennessGraph = graph;
+	}
+	
+	/*
+	 * Edge-betweenness of the edge between i and j from the last call of
+	 * edgeBetweenness(), or 0 if there is no such edge or it was added since.
+	 */
+	public double getEdgeBetweenness(int i, int j) {
+		if (edgeBetweenness == null || !isEdge(i, j)) {
+			return 0;
+		}
+		int u = betweennessGraph.indexOf(i);
+		int v = betweennessGraph.indexOf(j);
+		int id = (u < 0 || v < 0) ? -1 : betweennessGraph.edgeId(u, v);
+		return (id < 0) ? 0 : edgeBetweenness[id];
+	}
+	
+	/*
+	 * Immutable undirected CSRGraph of the graph as it is now. It is built
+	 * from the adjacency lists on the first call after a change and shared
+	 * until the next change, so the algorithms that run on CSRGraph do not
+	 * pay for a copy each time.
+	 */
+	public CSRGraph toCSRGraph() {
+		if (snapshot == null) {
+			int[] vertices = new int[graphNodes.size()];
+			int[] from = new int[numEdges];
+			int[] to = new int[numEdges];
+			int n = 0;
+			int count = 0;
+			for (Node node : graphNodes.values()) {
+				int label = node.getLabel();
+				vertices[n++] = label;
+				for (Edge edge : node.getAdjList()) {
+					// Every edge is in the lists of both ends; take it from its from node.
+					if (edge.getFromNode() == label && edge.getToNode() != label) {
+						from[count] = label;
+						to[count] = edge.getToNode();
+						count++;
 					}
 				}
 			}
-			
-			/*
-			 * delta is a hashmap with key as the vertex label and value as the
-			 * sum of centrality updates from edges originating from it.
-			 */
-			Map<Integer, Double> delta = new HashMap<>();
-			for (int key : graphNodes.keySet()) {
-				delta.put(key, 0.0);
-			}
-			
-			/*
-			 * We cascade up from the vertices which have the lowest depth or
-			 * farthest from the graphNode in the BFS Tree of graphNode.
-			 */
-			while (!vertexStack.isEmpty()) {
-				Node w = vertexStack.pop();
-				for (Node vertex : pMap.get(w.getLabel())) {
-					/*
-					 * The update for an edge corresponds to the number of shortest paths to the
-					 * originating vertex times the ratio of all the updates for all the edges originating
-					 * from the edge’s destination vertex over the number of shortest paths to destination
-					 * vertex plus one.
-					 */
-					double value = shortestPathCount.get(vertex.getLabel()) * 
-									(delta.get(w.getLabel())/shortestPathCount.get(w.getLabel()) + 1);
-					
-					/*
-		 			 * We keep track of all the edge centrality updates from all
-		 			 * edges originating from each of the vertex in the BFS Tree 
-		 			 * from nodeGraph.
-					 */
-					delta.put(vertex.getLabel(), delta.get(vertex.getLabel()) + value);
-					
-					Edge edge = new Edge(w.getLabel(), vertex.getLabel());
-					//System.out.println(edge);
-					//System.out.println(graphEdges.contains(edge));
-					/*
-					 * update the edge centrality contributions from bottom up
-					 */
-					edgeBetweennessMap.put(edge, edgeBetweennessMap.get(edge) + value);
-				}
+			snapshot = CSRGraph.fromEdges(vertices, n, from, to, count, false);
+		}
+		return snapshot;
+	}
+	
+	/*
+	 * The edge between i and j, found in the shorter of their adjacency
+	 * lists, or null if there is none.
+	 */
+	private Edge findEdge(int i, int j) {
+		Node iNode = graphNodes.get(i);
+		Node jNode = graphNodes.get(j);
+		if (iNode == null || jNode == null) {
+			return null;
+		}
+		List<Edge> adjList = (iNode.getAdjList().size() <= jNode.getAdjList().size())
+				? iNode.getAdjList() : jNode.getAdjList();
+		for (Edge edge : adjList) {
+			if ((edge.getFromNode() == i && edge.getToNode() == j)
+					|| (edge.getFromNode() == j && edge.getToNode() == i)) {
+				return edge;
 			}
 		}
+		return null;
 	}
 
 	@Override
 	public void addEdge(int from, int to) {
-		// Add edge between to and from nodes. The directed edge is in the adjacency list of from.
+		// Add edge between to and from nodes. The same edge object is in the adjacency lists
+		// of both, and an edge that is already there is not added again.
+		if (findEdge(from, to) != null) {
+			return;
+		}
 		Node fromNode = graphNodes.get(from);
 		Edge edge = new Edge(from, to);
 		fromNode.getAdjList().add(edge);
 		// Do not add while calculating egonet
 		graphNodes.get(to).getAdjList().add(edge);
-		if (!graphEdges.contains(edge)) {
-			graphEdges.add(edge);
-			numEdges++;
+		numEdges++;
+		snapshot = null;
+		edgeChanged(from, to);
+	}
+	
+	/*
+	 * Drops the cached egonets that the edge between u and v belongs to.
+	 */
+	private void edgeChanged(int u, int v) {
+		if (egonetCache != null && egonetCache.size() > 0) {
+			egonetCache.edgeChanged(u, v, getNeighbors(u), getNeighbors(v));
 		}
 	}
 	
+	/*
+	 * A binary search in the snapshot while there is one, so nested loops of
+	 * queries between changes, as in FastNewman.dQ(), cost O(log deg) each.
+	 * Otherwise a scan of the shorter adjacency list. Neither allocates.
+	 */
+	@Override
 	public boolean isEdge(int i, int j) {
-		return (graphEdges.contains(new Edge(i, j)) || graphEdges.contains(new Edge(j, i)));
+		if (snapshot != null && i != j) {
+			return snapshot.isEdge(i, j);
+		}
+		return findEdge(i, j) != null;
 	}
 	
 	public void printEdges() {
-		for (Edge edge : graphEdges) {
-			System.out.println(edge.getFromNode() + " " + edge.getToNode());
+		for (Node node : graphNodes.values()) {
+			for (Edge edge : node.getAdjList()) {
+				if (edge.getFromNode() == node.getLabel()) {
+					System.out.println(edge.getFromNode() + " " + edge.getToNode());
+				}
+			}
 		}
 	}
 	
+	@Override
 	public Set<Integer> getNodes() {
 		return graphNodes.keySet();
 	}
@@ -237,31 +231,70 @@ public class CapGraph implements Graph {
 	 */
 	@Override
 	public Graph getEgonet(int center) {
+		if (egonetCache != null) {
+			Graph cached = egonetCache.get(center);
+			if (cached == null) {
+				cached = buildEgonet(center);
+				egonetCache.put(center, cached);
+			}
+			return cached;
+		}
+		return buildEgonet(center);
+	}
+	
+	/*
+	 * Keeps the egonets returned by getEgonet in an LRU cache holding at most
+	 * 'maxWeight' vertices plus edges, or turns caching off if 'maxWeight' is
+	 * 0. Cached egonets are shared between callers and must not be modified.
+	 */
+	public void setEgonetCache(long maxWeight) {
+		egonetCache = (maxWeight > 0) ? new EgonetCache(maxWeight) : null;
+	}
+	
+	/*
+	 * The egonet cache with its hit and miss counts, or null if caching is off.
+	 */
+	public EgonetCache getEgonetCache() {
+		return egonetCache;
+	}
+	
+	private Graph buildEgonet(int center) {
 		Node centerNode = graphNodes.get(center);
 		Graph egoGraph = new CapGraph();
 		// Add the center node
 		egoGraph.addVertex(center);
 		for (Edge adjEdge : centerNode.getAdjList()) {
-			// Add end vertex and add the edge
-			egoGraph.addVertex(adjEdge.getToNode());
-			egoGraph.addEdge(center, adjEdge.getToNode());
+			// Add other end of the edge and add the edge
+			int otherEnd = (adjEdge.getToNode() == center) ? adjEdge.getFromNode() : adjEdge.getToNode();
+			egoGraph.addVertex(otherEnd);
+			egoGraph.addEdge(center, otherEnd);
 		}
 		Set<Integer> neighbors = getNeighbors(center);
 		// Add all edges of neighbors in the egoGraph and not connected to center
 		for (int nodeInt : neighbors) {
 			Node node = graphNodes.get(nodeInt);
 			for (Edge edgeOfList : node.getAdjList()) {
-				Node otherNode = graphNodes.get(edgeOfList.getToNode());
-				if (neighbors.contains(otherNode.getLabel()))
-					egoGraph.addEdge(node.getLabel(), edgeOfList.getToNode());
+				int otherEnd = (edgeOfList.getToNode() == nodeInt) ? edgeOfList.getFromNode() : edgeOfList.getToNode();
+				if (neighbors.contains(otherEnd))
+					egoGraph.addEdge(nodeInt, otherEnd);
 			}
 		}
 		return egoGraph;
 	}
 	
+	/*
+	 * Egonet statistics of the given centers, or of every vertex if 'centers'
+	 * is null, computed on an undirected CSRGraph snapshot without building
+	 * the egonets. getEgonet() on the statistics builds one when needed.
+	 */
+	public EgonetStats getEgonetStats(int[] centers, boolean parallel) {
+		return toCSRGraph().getEgonetStats(centers, parallel);
+	}
+	
 	/*
 	 * Returns the set of neighbors of the node with vertex label 'center'.
 	 */
+	@Override
 	public HashSet<Integer> getNeighbors(int center) {
 		HashSet<Integer> neighbors = new HashSet<>();
 		Node centerNode = graphNodes.get(center);
@@ -272,68 +305,16 @@ public class CapGraph implements Graph {
 		return neighbors;
 	}
 	
-	@Override
-	public List<Graph> getSCCs() {
-		Set<Integer> visited = new HashSet<>();
-		Stack<Integer> finished = new Stack<>();
-		while (!nodeStack.isEmpty()) {
-			int v = nodeStack.pop();
-			if (!visited.contains(v)) {
-				DFSVisit(this, v, visited, finished);
-			}
-		}
-		visited = new HashSet<>();
-		CapGraph reverseGraph = this.reverse();
-		List<Graph> graphList = new ArrayList<Graph>();
-		while (!finished.isEmpty()) {
-			int w = finished.pop();
-			if (!visited.contains(w)) {
-				CapGraph sccGraph = new CapGraph();
-				DFSVisitReverse(sccGraph, reverseGraph, w, visited);
-				graphList.add(sccGraph);
-			}
-		}
-		return graphList;
-	}
-	
-	/*
-	 * Reverse DFS to find out the strongly connected components
-	 * of the given graph
-	 */
-	private void DFSVisitReverse(CapGraph scCapGraph, CapGraph reverseGraph, int w, Set<Integer> visited) {
-		visited.add(w);
-		scCapGraph.addVertex(w);
-		for (int n : reverseGraph.getNeighbors(w)) {
-			if (!visited.contains(n)) {
-				DFSVisitReverse(scCapGraph, reverseGraph, n, visited);
-			}
-		}
-	}
-	
 	/*
-	 * Depth First Search from vertex v
+	 * Components are found by Tarjan's algorithm with an explicit stack over
+	 * toCSRGraph(), so long paths cannot overflow the Java stack. Edges of
+	 * a CapGraph are in the adjacency lists of both their ends, so the snapshot
+	 * is undirected, as getNeighbors() is.
 	 */
-	private void DFSVisit(CapGraph capGraph, int v, Set<Integer> visited, Stack<Integer> finished) {
-		visited.add(v);
-		for (int n : getNeighbors(v)) {
-			if (!visited.contains(n)) {
-				DFSVisit(capGraph, n, visited, finished);
-			}
-		}
-		finished.push(v);
-	}
-	
-	
-	// Reverse the Capgraph edges
-	private CapGraph reverse() {
-		CapGraph reverseGraph = new CapGraph();
-		for (int nodeInt : graphNodes.keySet()) {
-			reverseGraph.addVertex(nodeInt);
-		}
-		for (Edge graphEdge : graphEdges) {
-			reverseGraph.addEdge(graphEdge.getToNode(), graphEdge.getFromNode());
-		}
-		return reverseGraph;
+	@Override
+	public List<Graph> getSCCs() {
+		StronglyConnectedComponents sccs = new StronglyConnectedComponents(toCSRGraph());
+		return sccs.getComponentGraphs(CapGraph::new);
 	}
 
 	@Override
@@ -345,10 +326,12 @@ public class CapGraph implements Graph {
 		return mapGraph;
 	}
 	
+	@Override
 	public int getNumNodes() {
 		return numNodes;
 	}
 	
+	@Override
 	public int getNumEdges() {
 		return numEdges;
 	}
@@ -356,71 +339,75 @@ public class CapGraph implements Graph {
 	/*
 	 * Print the different communities after removing the edge with
 	 * highest betweenness centrality
+	 * 
+	 * The communities are the connected components, labeled by a
+	 * ComponentTracker over toCSRGraph().
 	 */
 	public void printGraph() {
-		Set<Integer> visited = new HashSet<>();
-		for (Node x : graphNodes.values()) {
-			if (!visited.contains(x.getLabel())) {
-				DFSNode(x.getLabel(), visited);
-				System.out.println();
-			}
+		CSRGraph graph = toCSRGraph();
+		ComponentTracker components = new ComponentTracker(graph);
+		int[] membership = new int[graph.getNumNodes()];
+		for (int v = 0; v < membership.length; v++) {
+			membership[v] = components.componentOf(v);
 		}
+		printCommunities(graph, membership);
 	}
 	
 	/*
-	 * Helper method for DFS in printGraph
+	 * Prints every community of 'membership' on a line, in order of their
+	 * lowest vertex, each with its vertices in ascending order. The ids in
+	 * 'membership' are renumbered.
 	 */
-	private void DFSNode(int v, Set<Integer> visited) {
-		visited.add(v);
-		System.out.print(v + " ");
-		for (int n : getNeighbors(v)) {
-			if (!visited.contains(n)) {
-				DFSNode(n, visited);
+	private static void printCommunities(CSRGraph snapshot, int[] membership) {
+		int n = snapshot.getNumNodes();
+		int count = Communities.renumber(membership);
+		StringBuilder[] lines = new StringBuilder[count];
+		for (int v = 0; v < n; v++) {
+			if (lines[membership[v]] == null) {
+				lines[membership[v]] = new StringBuilder();
 			}
+			lines[membership[v]].append(snapshot.labelOf(v)).append(' ');
+		}
+		for (StringBuilder line : lines) {
+			System.out.println(line);
 		}
 	}
 	
 	/*
-	 * Removes the edge with highest betweenness from the graph and edge betweenness map 
-	 * and the adjacent lists of the head and the tail.
-	 */
-	private void removeEdge(Edge graphEdge) {
-		graphEdges.remove(graphEdge);
-		edgeBetweennessMap.remove(graphEdge);
-		Node node1 = graphNodes.get(graphEdge.getFromNode());
-		Node node2 = graphNodes.get(graphEdge.getToNode());
-		node1.getAdjList().remove(new Edge(graphEdge.getFromNode(), graphEdge.getToNode()));
-		node2.getAdjList().remove(new Edge(graphEdge.getFromNode(), graphEdge.getToNode()));
-		node1.getAdjList().remove(new Edge(graphEdge.getToNode(), graphEdge.getFromNode()));
-		node2.getAdjList().remove(new Edge(graphEdge.getToNode(), graphEdge.getFromNode()));
-		numEdges--;
-	}
-	
-	/*
-	 * Returns the list of edges with the maximum measure of betweenness centrality. 
-	 * We then remove all the edges with the maximum BW centrality measure
+	 * Removes the edge between the end points of graphEdge from the graph and the
+	 * adjacent lists of the head and the tail.
 	 */
-	private List<Edge> getMaxBW() {
-		double maxBW = 0;
-		List<Edge> maxBWEdgeList = new ArrayList<>();
-		for (Edge graphEdge : edgeBetweennessMap.keySet()) {
-			if (edgeBetweennessMap.get(graphEdge) > maxBW) {
-				maxBW = edgeBetweennessMap.get(graphEdge);
-			}
-		}
-		for (Edge graphEdge : edgeBetweennessMap.keySet()) {
-			if (edgeBetweennessMap.get(graphEdge) == maxBW) {
-				maxBWEdgeList.add(graphEdge);
-			}
+	public void removeEdge(Edge graphEdge) {
+		int from = graphEdge.getFromNode();
+		int to = graphEdge.getToNode();
+		Edge edge = findEdge(from, to);
+		if (edge == null) {
+			return;
 		}
-		return maxBWEdgeList;
+		graphNodes.get(from).getAdjList().remove(edge);
+		graphNodes.get(to).getAdjList().remove(edge);
+		numEdges--;
+		snapshot = null;
+		edgeChanged(from, to);
 	}
 	
 	/*
 	 * Program driver for the Girvan Newman algorithm for detecting 
 	 * communities using edge betweenness centrality measure.
+	 * 
+	 * The run itself is GirvanNewman on a CSRGraph snapshot of the graph,
+	 * which only recomputes the betweenness of the components that lost an
+	 * edge. The communities are printed through a PartitionSink whenever a
+	 * removal splits one of them.
+	 * 
+	 * An optional argument gives a time budget in seconds, after which the
+	 * run stops with the communities found so far.
 	 */
-	public static void main(String args[]) {
+	public static void main(String args[]) throws IOException {
+		RunControl control = new RunControl();
+		if (args.length > 0) {
+			control.setTimeBudget((long) (Double.parseDouble(args[0]) * 1000));
+		}
 		CapGraph graph = new CapGraph();
 		GraphLoader.loadGraph(graph, "./data/football.txt");
 		graph.printGraph();
@@ -436,28 +423,28 @@ public class CapGraph implements Graph {
 		 * A dendrogram  is a tree diagram frequently used to illustrate 
 		 * the arrangement of the clusters produced by hierarchical clustering
 		 */
-		while (graph.getNumEdges() > 0) {
-			/*
-			 * Recalculate the edge betweenness every time we remove
-			 * the edges with the highest edge betweennness measure
-			 */
-			graph.edgeBetweenness();
-			
-			/*
-			 * List of edges with highest Edge BW measure
-			 */
-			List<Edge> maxBW = graph.getMaxBW();
-			System.out.println(maxBW);
-			/*
-			 * Remove all edges with highest Edge BW
-			 */
-			for (Edge maxBWEdge : maxBW)
-				graph.removeEdge(maxBWEdge);
-			
-			// At each step print the resulting communities
-			graph.printGraph();
-			System.out.println("\n\n\n\n");
-		}	
+		CSRGraph snapshot = graph.toCSRGraph();
+		GirvanNewman gn = new GirvanNewman(snapshot, true);
+		gn.setRunControl(control);
+		try (PartitionSink sink = new PartitionSink() {
+			@Override
+			public void accept(int level, double modularity, int[] labels, int[] membership) {
+				// Level 0 is the starting graph, printed above.
+				if (level > 0) {
+					printCommunities(snapshot, membership.clone());
+					System.out.println("\n\n\n\n");
+				}
+			}
+
+			@Override
+			public void close() {
+			}
+		}) {
+			gn.run(sink);
+		}
+		if (gn.getNumRemainingEdges() > 0) {
+			System.out.println("Stopped with " + gn.getNumRemainingEdges() + " edges left");
+		}
 	}
 
 }
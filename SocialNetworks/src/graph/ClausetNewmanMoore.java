@@ -0,0 +1,426 @@
+package graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import util.CheckpointFile;
+import util.IntDoubleHashMap;
+import util.IntList;
+import util.Metrics;
+
+/**
+ * Greedy modularity maximization with the data structures of Clauset,
+ * Newman and Moore, "Finding community structure in very large networks"
+ * (Phys. Rev. E 70, 066111).
+ *
+ * Instead of evaluating dQ for every pair of communities at every step, it
+ * keeps
+ *  - a ModularityTracker, whose link counts form a sparse matrix holding only
+ *    pairs of communities joined by at least one edge (merging two
+ *    unconnected communities never raises Q) and give dQ of a pair in O(1),
+ *  - a max-heap over every row of that matrix,
+ *  - a global max-heap holding the largest element of each row.
+ * Joining communities t and s changes a_s, so only the entries of s and its
+ * neighbors have to be pushed again, each costing O(log n) in the heaps.
+ * Because dQ comes from integer counts rather than from adding up the
+ * updates of earlier merges, it is the same however the partition was reached.
+ *
+ * Communities are identified by their 'leader', the lowest vertex label in
+ * them, as in FastNewmanImpl. Among pairs with the same dQ the pair of the
+ * lowest internal ids is merged, so a run does not depend on heap layout.
+ */
+public class ClausetNewmanMoore {
+
+	private final CSRGraph graph;
+
+	private final ModularityTracker tracker;
+
+	// Lazy max-heap over each row of the tracker's link counts.
+	private final RowHeap[] rowHeaps;
+
+	// Largest dQ of every non empty row.
+	private final IndexedMaxHeap rowMaxima;
+
+	// Members (dense ids) and lowest dense id of every community.
+	private final IntList[] members;
+	private final int[] leader;
+
+	// Leader labels of the two communities joined by the last merge.
+	private int lastFirst;
+	private int lastSecond;
+	private double lastDeltaQ;
+
+	// Heap pushes, pops, rebuilds and updates of the global heap so far.
+	private long heapOperations;
+
+	public ClausetNewmanMoore(CSRGraph graph) {
+		this(graph, new ModularityTracker(graph), singletons(graph.getNumNodes()), identity(graph.getNumNodes()));
+	}
+
+	/*
+	 * Starts from the communities in 'members', whose aggregates are in
+	 * 'tracker'. The heaps are built from the rows of the tracker, which
+	 * gives the same merges as heaps that were updated merge by merge, since
+	 * the merge order does not depend on heap layout.
+	 */
+	private ClausetNewmanMoore(CSRGraph graph, ModularityTracker tracker, IntList[] members, int[] leader) {
+		this.graph = graph;
+		this.tracker = tracker;
+		this.members = members;
+		this.leader = leader;
+		int n = graph.getNumNodes();
+
+		rowHeaps = new RowHeap[n];
+		rowMaxima = new IndexedMaxHeap(n);
+
+		for (int i = 0; i < n; i++) {
+			if (!tracker.isActive(i)) {
+				continue;
+			}
+			rowHeaps[i] = new RowHeap(Math.max(graph.degree(i), tracker.neighbors(i).size()));
+			rowHeaps[i].rebuild(tracker, i);
+			refreshRowMaximum(i);
+		}
+	}
+
+	private static IntList[] singletons(int n) {
+		IntList[] members = new IntList[n];
+		for (int i = 0; i < n; i++) {
+			members[i] = new IntList(1);
+			members[i].add(i);
+		}
+		return members;
+	}
+
+	private static int[] identity(int n) {
+		int[] leader = new int[n];
+		for (int i = 0; i < n; i++) {
+			leader[i] = i;
+		}
+		return leader;
+	}
+
+	/*
+	 * Copies the communities for a checkpoint, to be written later by another
+	 * thread: per community int leader, int member count (-1 once merged)
+	 * and the members, followed by the ModularityTracker state.
+	 */
+	CheckpointFile.Content save() {
+		int n = members.length;
+		int[] savedLeader = leader.clone();
+		int[][] savedMembers = new int[n][];
+		for (int c = 0; c < n; c++) {
+			if (members[c] != null) {
+				savedMembers[c] = members[c].toArray();
+			}
+		}
+		CheckpointFile.Content savedTracker = tracker.save();
+		return out -> {
+			for (int c = 0; c < n; c++) {
+				out.putInt(savedLeader[c]);
+				if (savedMembers[c] == null) {
+					out.putInt(-1);
+					continue;
+				}
+				out.putInt(savedMembers[c].length);
+				for (int v : savedMembers[c]) {
+					out.putInt(v);
+				}
+			}
+			savedTracker.writeTo(out);
+		};
+	}
+
+	/*
+	 * Reads back what save() wrote, for the same graph.
+	 */
+	static ClausetNewmanMoore restore(CSRGraph graph, ByteBuffer in) throws IOException {
+		int n = graph.getNumNodes();
+		int[] leader = new int[n];
+		IntList[] members = new IntList[n];
+		for (int c = 0; c < n; c++) {
+			leader[c] = in.getInt();
+			int size = in.getInt();
+			if (size < -1 || size > n || leader[c] < 0 || leader[c] >= n) {
+				throw new IOException("Invalid community " + c);
+			}
+			if (size < 0) {
+				continue;
+			}
+			members[c] = new IntList(Math.max(size, 1));
+			for (int k = 0; k < size; k++) {
+				int v = in.getInt();
+				if (v < 0 || v >= n) {
+					throw new IOException("Invalid vertex " + v);
+				}
+				members[c].add(v);
+			}
+		}
+		ModularityTracker tracker = ModularityTracker.restore(graph, in);
+		for (int c = 0; c < n; c++) {
+			if ((members[c] == null) == tracker.isActive(c)) {
+				throw new IOException("Community " + c + " does not match its aggregates");
+			}
+		}
+		return new ClausetNewmanMoore(graph, tracker, members, leader);
+	}
+
+	public int getNumCommunities() {
+		return tracker.getNumCommunities();
+	}
+
+	public double getModularity() {
+		return tracker.getModularity();
+	}
+
+	public int getLastFirst() {
+		return lastFirst;
+	}
+
+	public int getLastSecond() {
+		return lastSecond;
+	}
+
+	public double getLastDeltaQ() {
+		return lastDeltaQ;
+	}
+
+	/*
+	 * Joins the pair of adjacent communities with the largest dQ, which may be
+	 * negative once Q has peaked. Returns false when no two communities are
+	 * joined by an edge any more, that is when every connected component has
+	 * become a single community.
+	 */
+	public boolean mergeBest() {
+		if (rowMaxima.isEmpty()) {
+			return false;
+		}
+		long begin = System.nanoTime();
+		CnmMergeEvent event = Metrics.isRecording() ? new CnmMergeEvent() : null;
+		if (event != null) {
+			event.begin();
+		}
+		long evaluationsBefore = tracker.getNumEvaluations();
+		long heapOperationsBefore = heapOperations;
+
+		int i = rowMaxima.top();
+		int j = rowHeaps[i].topKey();
+
+		lastFirst = graph.labelOf(leader[i]);
+		lastSecond = graph.labelOf(leader[j]);
+		lastDeltaQ = rowHeaps[i].topValue();
+
+		// Fold the community with the shorter row into the other one.
+		if (tracker.neighbors(i).size() > tracker.neighbors(j).size()) {
+			join(j, i);
+		} else {
+			join(i, j);
+		}
+
+		long evaluations = tracker.getNumEvaluations() - evaluationsBefore;
+		long operations = heapOperations - heapOperationsBefore;
+		Metrics.add(Metrics.Counter.MERGES, 1);
+		Metrics.add(Metrics.Counter.DQ_EVALUATIONS, evaluations);
+		Metrics.add(Metrics.Counter.HEAP_OPERATIONS, operations);
+		Metrics.record(Metrics.Timer.CNM_MERGE, System.nanoTime() - begin);
+		if (event != null && event.shouldCommit()) {
+			event.first = lastFirst;
+			event.second = lastSecond;
+			event.deltaQ = lastDeltaQ;
+			event.communities = tracker.getNumCommunities();
+			event.dqEvaluations = evaluations;
+			event.heapOperations = operations;
+			event.commit();
+		}
+		return true;
+	}
+
+	/*
+	 * Merges community t into community s and updates the heaps.
+	 */
+	private void join(int t, int s) {
+		tracker.merge(t, s);
+		rowHeaps[t] = null;
+		rowMaxima.remove(t);
+		heapOperations++;
+
+		// a_s changed, so every entry for s is new.
+		IntDoubleHashMap rowS = tracker.neighbors(s);
+		for (int slot = 0; slot < rowS.capacity(); slot++) {
+			if (!rowS.isUsed(slot)) {
+				continue;
+			}
+			int k = rowS.keyAt(slot);
+			rowHeaps[k].push(s, tracker.dQ(k, s));
+			heapOperations++;
+			refreshRowMaximum(k);
+		}
+		rowHeaps[s].rebuild(tracker, s);
+		heapOperations++;
+		refreshRowMaximum(s);
+
+		members[s].addAll(members[t]);
+		members[t] = null;
+		leader[s] = Math.min(leader[s], leader[t]);
+	}
+
+	/*
+	 * Puts the largest valid element of row c in the global heap.
+	 */
+	private void refreshRowMaximum(int c) {
+		RowHeap heap = rowHeaps[c];
+		heapOperations += heap.dropStale(tracker, c) + 1;
+		if (heap.isEmpty()) {
+			rowMaxima.remove(c);
+		} else {
+			rowMaxima.set(c, heap.topValue());
+		}
+	}
+
+	/*
+	 * The current communities, keyed by leader label, each a list of labels.
+	 */
+	public Map<Integer, List<Integer>> getCommunities() {
+		Map<Integer, List<Integer>> communities = new HashMap<>();
+		for (int c = 0; c < members.length; c++) {
+			if (members[c] == null) {
+				continue;
+			}
+			List<Integer> list = new ArrayList<>(members[c].size());
+			for (int k = 0; k < members[c].size(); k++) {
+				list.add(graph.labelOf(members[c].get(k)));
+			}
+			communities.put(graph.labelOf(leader[c]), list);
+		}
+		return communities;
+	}
+
+	/**
+	 * Max-heap of (key, dQ) pairs of one row. Entries are not removed
+	 * when the row changes; a new entry is pushed instead and the old ones are
+	 * dropped when they reach the top and no longer match the row. The heap is
+	 * rebuilt from the row when stale entries outnumber live ones.
+	 */
+	private static class RowHeap {
+
+		private int[] keys;
+		private double[] values;
+		private int size;
+
+		RowHeap(int capacity) {
+			keys = new int[Math.max(capacity, 2)];
+			values = new double[Math.max(capacity, 2)];
+		}
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		int topKey() {
+			return keys[0];
+		}
+
+		double topValue() {
+			return values[0];
+		}
+
+		// Larger values first, then lower keys.
+		private boolean above(int i, int j) {
+			return values[i] > values[j] || (values[i] == values[j] && keys[i] < keys[j]);
+		}
+
+		void push(int key, double value) {
+			if (size == keys.length) {
+				keys = Arrays.copyOf(keys, size * 2);
+				values = Arrays.copyOf(values, size * 2);
+			}
+			keys[size] = key;
+			values[size] = value;
+			int i = size++;
+			while (i > 0 && above(i, (i - 1) >>> 1)) {
+				swap(i, (i - 1) >>> 1);
+				i = (i - 1) >>> 1;
+			}
+		}
+
+		private void pop() {
+			size--;
+			keys[0] = keys[size];
+			values[0] = values[size];
+			siftDown(0);
+		}
+
+		private void siftDown(int i) {
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= size) {
+					break;
+				}
+				if (child + 1 < size && above(child + 1, child)) {
+					child++;
+				}
+				if (!above(child, i)) {
+					break;
+				}
+				swap(i, child);
+				i = child;
+			}
+		}
+
+		private void swap(int i, int j) {
+			int key = keys[i];
+			keys[i] = keys[j];
+			keys[j] = key;
+			double value = values[i];
+			values[i] = values[j];
+			values[j] = value;
+		}
+
+		/*
+		 * Pops entries off the top until the top matches row c. Returns the
+		 * number of pops, or 1 if the heap was rebuilt instead.
+		 */
+		int dropStale(ModularityTracker tracker, int c) {
+			IntDoubleHashMap row = tracker.neighbors(c);
+			if (size > 2 * row.size() + 8) {
+				rebuild(tracker, c);
+				return 1;
+			}
+			int pops = 0;
+			while (size > 0 && !(row.containsKey(keys[0]) && tracker.dQ(c, keys[0]) == values[0])) {
+				pop();
+				pops++;
+			}
+			return pops;
+		}
+
+		/*
+		 * Replaces the contents with exactly the entries of row c, building the
+		 * heap bottom up in linear time.
+		 */
+		void rebuild(ModularityTracker tracker, int c) {
+			IntDoubleHashMap row = tracker.neighbors(c);
+			if (keys.length < row.size()) {
+				keys = new int[row.size()];
+				values = new double[row.size()];
+			}
+			size = 0;
+			for (int slot = 0; slot < row.capacity(); slot++) {
+				if (row.isUsed(slot)) {
+					keys[size] = row.keyAt(slot);
+					values[size] = tracker.dQ(c, keys[size]);
+					size++;
+				}
+			}
+			for (int i = size / 2 - 1; i >= 0; i--) {
+				siftDown(i);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,39 @@
+package graph;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event for one ClausetNewmanMoore merge, with the
+ * heap work it took. Only created once Flight Recorder is running.
+ */
+@Name("graph.CnmMerge")
+@Label("CNM Merge")
+@Category({ "Community Detection", "Clauset Newman Moore" })
+@Description("Join of the pair of communities with the largest dQ")
+@StackTrace(false)
+class CnmMergeEvent extends Event {
+
+	@Label("First Leader")
+	int first;
+
+	@Label("Second Leader")
+	int second;
+
+	@Label("Delta Q")
+	double deltaQ;
+
+	@Label("Communities")
+	int communities;
+
+	@Label("dQ Evaluations")
+	long dqEvaluations;
+
+	@Label("Heap Operations")
+	long heapOperations;
+
+}
@@ -0,0 +1,63 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Conversions between a community id per vertex and the map of communities
+ * that the detectors hand out.
+ */
+final class Communities {
+
+	private Communities() {
+	}
+
+	/*
+	 * Groups the vertices by membership[v], for the dense vertices v of a
+	 * graph with the given labels. Every community is keyed by its 'leader',
+	 * the lowest label in it, as in FastNewmanImpl, and lists its labels in
+	 * ascending order when the labels are ascending.
+	 */
+	static Map<Integer, List<Integer>> byLeader(int[] labels, int[] membership) {
+		int numIds = 0;
+		for (int c : membership) {
+			numIds = Math.max(numIds, c + 1);
+		}
+		int[] leader = new int[numIds];
+		Arrays.fill(leader, Integer.MAX_VALUE);
+		for (int v = 0; v < membership.length; v++) {
+			leader[membership[v]] = Math.min(leader[membership[v]], labels[v]);
+		}
+		Map<Integer, List<Integer>> communities = new HashMap<>();
+		for (int v = 0; v < membership.length; v++) {
+			communities.computeIfAbsent(leader[membership[v]], k -> new ArrayList<>()).add(labels[v]);
+		}
+		return communities;
+	}
+
+	/*
+	 * Renumbers the ids in membership to 0..k-1 in order of first appearance
+	 * and returns k.
+	 */
+	static int renumber(int[] membership) {
+		int numIds = 0;
+		for (int c : membership) {
+			numIds = Math.max(numIds, c + 1);
+		}
+		int[] newId = new int[numIds];
+		Arrays.fill(newId, -1);
+		int next = 0;
+		for (int v = 0; v < membership.length; v++) {
+			int c = membership[v];
+			if (newId[c] < 0) {
+				newId[c] = next++;
+			}
+			membership[v] = newId[c];
+		}
+		return next;
+	}
+
+}
@@ -0,0 +1,261 @@
+package graph;
+
+import java.util.Arrays;
+
+/**
+ * Connected components of an undirected CSRGraph under edge deletions.
+ *
+ * Every vertex has its component id in an int[] and every component its
+ * size, so componentOf(), getSize() and connected() take constant time.
+ *
+ * When an edge is removed, two searches over the remaining edges start from
+ * its end points and advance in turn, one arc at a time. If they meet, the
+ * component is still connected and nothing changes. If one of them runs out
+ * of arcs first, it has visited the whole piece on its side, which is the
+ * smaller piece, and only that piece gets a new id. A removal therefore
+ * costs at most about twice the edges of the smaller side, instead of a
+ * search of the whole graph.
+ */
+public class ComponentTracker {
+
+	private final CSRGraph graph;
+
+	// removed[e] is true once the edge with id e has been removed.
+	private final boolean[] removed;
+
+	// Component id of every vertex and size of every id; sizes of ids that
+	// are no longer used are 0.
+	private final int[] component;
+	private int[] size;
+	private int numComponents;
+	private int nextId;
+
+	// Search workspace: mark[v] is the stamp of the side that reached v.
+	private final int[] mark;
+	private int stamp;
+	private final Side sideA;
+	private final Side sideB;
+
+	// Vertices given a new id by the last removal, or null if it split nothing,
+	// and the id the rest of their old component kept.
+	private Side splitOff;
+	private int splitFrom;
+
+	public ComponentTracker(CSRGraph graph) {
+		this.graph = graph;
+		int n = graph.getNumNodes();
+		this.removed = new boolean[graph.getNumEdges()];
+		this.component = new int[n];
+		this.size = new int[Math.max(n, 1)];
+		this.mark = new int[n];
+		this.sideA = new Side(n);
+		this.sideB = new Side(n);
+
+		Arrays.fill(component, -1);
+		int[] queue = sideA.queue;
+		int[] offsets = graph.getOffsets();
+		int[] targets = graph.getTargets();
+		for (int s = 0; s < n; s++) {
+			if (component[s] >= 0) {
+				continue;
+			}
+			int id = nextId++;
+			int head = 0;
+			int tail = 0;
+			component[s] = id;
+			queue[tail++] = s;
+			while (head < tail) {
+				int v = queue[head++];
+				for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+					int w = targets[i];
+					if (component[w] < 0) {
+						component[w] = id;
+						queue[tail++] = w;
+					}
+				}
+			}
+			size[id] = tail;
+			numComponents++;
+		}
+	}
+
+	/*
+	 * Removes the edge with id e and returns true if that split its component
+	 * in two. Removing an edge twice does nothing.
+	 */
+	public boolean removeEdge(int e) {
+		if (removed[e]) {
+			return false;
+		}
+		removed[e] = true;
+		splitOff = null;
+		int u = graph.edgeSource(e);
+		int v = graph.edgeTarget(e);
+		if (u == v) {
+			return false;
+		}
+
+		stamp += 2;
+		if (stamp < 0) {
+			Arrays.fill(mark, 0);
+			stamp = 2;
+		}
+		sideA.start(u, stamp);
+		sideB.start(v, stamp + 1);
+		while (true) {
+			int step = sideA.step();
+			if (step == MET) {
+				return false;
+			}
+			if (step == DONE) {
+				split(sideA);
+				return true;
+			}
+			step = sideB.step();
+			if (step == MET) {
+				return false;
+			}
+			if (step == DONE) {
+				split(sideB);
+				return true;
+			}
+		}
+	}
+
+	// Gives the piece visited by 'side' a new id.
+	private void split(Side side) {
+		int old = component[side.queue[0]];
+		int id = nextId++;
+		if (id == size.length) {
+			size = Arrays.copyOf(size, 2 * id);
+		}
+		for (int k = 0; k < side.tail; k++) {
+			component[side.queue[k]] = id;
+		}
+		size[id] = side.tail;
+		size[old] -= side.tail;
+		numComponents++;
+		splitOff = side;
+		splitFrom = old;
+	}
+
+	private static final int MORE = 0;
+	private static final int MET = 1;
+	private static final int DONE = 2;
+
+	/**
+	 * One of the two searches, a breadth first search that can be advanced
+	 * one arc at a time.
+	 */
+	private class Side {
+
+		final int[] queue;
+		int head;
+		int tail;
+		int own;
+		// Current vertex and the next of its arcs to look at.
+		int vertex;
+		int arc;
+		int end;
+
+		Side(int n) {
+			queue = new int[n];
+		}
+
+		void start(int s, int ownStamp) {
+			own = ownStamp;
+			mark[s] = own;
+			queue[0] = s;
+			head = 1;
+			tail = 1;
+			vertex = s;
+			arc = graph.getOffsets()[s];
+			end = graph.getOffsets()[s + 1];
+		}
+
+		/*
+		 * Looks at one arc. Returns MET if it reached the other side, DONE
+		 * if the whole piece has been visited, and MORE otherwise.
+		 */
+		int step() {
+			int[] offsets = graph.getOffsets();
+			while (arc == end) {
+				if (head == tail) {
+					return DONE;
+				}
+				vertex = queue[head++];
+				arc = offsets[vertex];
+				end = offsets[vertex + 1];
+			}
+			int i = arc++;
+			if (removed[graph.getEdgeIds()[i]]) {
+				return MORE;
+			}
+			int w = graph.getTargets()[i];
+			int m = mark[w];
+			if (m == (own ^ 1)) {
+				return MET;
+			}
+			if (m != own) {
+				mark[w] = own;
+				queue[tail++] = w;
+			}
+			return MORE;
+		}
+	}
+
+	/*
+	 * Dense ids of the vertices that the last call of removeEdge() moved to
+	 * a new component, the smaller piece, or an empty array if it did not
+	 * split anything. The rest of the old component keeps its id.
+	 */
+	public int[] getSplitOff() {
+		return (splitOff == null) ? new int[0] : Arrays.copyOf(splitOff.queue, splitOff.tail);
+	}
+
+	/*
+	 * Id of the component that the last split took getSplitOff() from, or
+	 * -1 if the last removal did not split anything.
+	 */
+	public int getSplitFrom() {
+		return (splitOff == null) ? -1 : splitFrom;
+	}
+
+	public boolean isRemoved(int e) {
+		return removed[e];
+	}
+
+	/*
+	 * The removed flags indexed by edge id, for EdgeBetweenness. Do not modify.
+	 */
+	boolean[] getRemoved() {
+		return removed;
+	}
+
+	public int componentOf(int v) {
+		return component[v];
+	}
+
+	public boolean connected(int u, int v) {
+		return component[u] == component[v];
+	}
+
+	/*
+	 * Number of vertices in the component with id c.
+	 */
+	public int getSize(int c) {
+		return size[c];
+	}
+
+	public int getNumComponents() {
+		return numComponents;
+	}
+
+	/*
+	 * One more than the highest component id handed out so far.
+	 */
+	public int getIdBound() {
+		return nextId;
+	}
+
+}
@@ -0,0 +1,153 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merge log of an agglomerative run. Step k joins the communities holding
+ * the leaves childA[k] and childB[k] and changes modularity by dQ[k], so a
+ * run over V vertices takes O(V) ints and doubles no matter how many
+ * partitions it passes through.
+ *
+ * The partition after any number of merges is rebuilt on demand by
+ * replaying the log into a union-find, in O(V + level) time.
+ *
+ * Leaves are numbered 0..V-1 and labels[leaf] is the vertex label of leaf.
+ */
+public class Dendrogram {
+
+	private final int[] labels;
+	private final double initialModularity;
+
+	private int[] childA;
+	private int[] childB;
+	private double[] dQ;
+	private int numMerges;
+
+	public Dendrogram(int[] labels, double initialModularity) {
+		this.labels = labels;
+		this.initialModularity = initialModularity;
+		int capacity = Math.max(labels.length - 1, 1);
+		childA = new int[capacity];
+		childB = new int[capacity];
+		dQ = new double[capacity];
+	}
+
+	/*
+	 * Records that the communities holding leaves a and b were joined.
+	 */
+	public void addMerge(int a, int b, double deltaQ) {
+		if (numMerges == childA.length) {
+			childA = Arrays.copyOf(childA, numMerges * 2);
+			childB = Arrays.copyOf(childB, numMerges * 2);
+			dQ = Arrays.copyOf(dQ, numMerges * 2);
+		}
+		childA[numMerges] = a;
+		childB[numMerges] = b;
+		dQ[numMerges] = deltaQ;
+		numMerges++;
+	}
+
+	public int getNumLeaves() {
+		return labels.length;
+	}
+
+	public int getNumMerges() {
+		return numMerges;
+	}
+
+	public int getChildA(int step) {
+		return childA[step];
+	}
+
+	public int getChildB(int step) {
+		return childB[step];
+	}
+
+	public double getDeltaQ(int step) {
+		return dQ[step];
+	}
+
+	/*
+	 * Modularity after the first 'level' merges.
+	 */
+	public double getModularity(int level) {
+		double q = initialModularity;
+		for (int k = 0; k < level; k++) {
+			q += dQ[k];
+		}
+		return q;
+	}
+
+	/*
+	 * The number of merges after which modularity is highest. The earliest
+	 * such level wins ties.
+	 */
+	public int getBestLevel() {
+		int best = 0;
+		double q = initialModularity;
+		double bestQ = q;
+		for (int k = 0; k < numMerges; k++) {
+			q += dQ[k];
+			if (q > bestQ) {
+				bestQ = q;
+				best = k + 1;
+			}
+		}
+		return best;
+	}
+
+	/*
+	 * For every leaf, the lowest leaf in its community after the first
+	 * 'level' merges.
+	 */
+	public int[] membershipAt(int level) {
+		if (level < 0 || level > numMerges) {
+			throw new IndexOutOfBoundsException("Level " + level + " of " + numMerges);
+		}
+		int n = labels.length;
+		int[] parent = new int[n];
+		for (int i = 0; i < n; i++) {
+			parent[i] = i;
+		}
+		for (int k = 0; k < level; k++) {
+			int a = find(parent, childA[k]);
+			int b = find(parent, childB[k]);
+			// Keep the lower leaf as root, so the root is the lowest member.
+			if (a < b) {
+				parent[b] = a;
+			} else if (b < a) {
+				parent[a] = b;
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			parent[i] = find(parent, i);
+		}
+		return parent;
+	}
+
+	private static int find(int[] parent, int i) {
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	/*
+	 * The communities after the first 'level' merges, keyed by leader, the
+	 * lowest vertex label in them, each a list of vertex labels.
+	 */
+	public Map<Integer, List<Integer>> partitionAt(int level) {
+		return Communities.byLeader(labels, membershipAt(level));
+	}
+
+	/*
+	 * The communities at the level of highest modularity.
+	 */
+	public Map<Integer, List<Integer>> bestPartition() {
+		return partitionAt(getBestLevel());
+	}
+
+}
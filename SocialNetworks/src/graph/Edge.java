@@ -39,7 +39,10 @@ public class Edge implements Comparable<Edge> {
 	
 	@Override
 	public int hashCode() {
-		return 31 + this.fromNode + this.toNode;
+		// Symmetric, as equals() is, but without mapping every pair with the same sum to one bucket.
+		int low = Math.min(this.fromNode, this.toNode);
+		int high = Math.max(this.fromNode, this.toNode);
+		return 31 * low + high;
 	}
 	
 	@Override
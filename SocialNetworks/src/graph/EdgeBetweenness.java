@@ -0,0 +1,214 @@
+package graph;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import util.IntList;
+import util.Metrics;
+
+/**
+ * Brandes' edge betweenness over a CSRGraph.
+ *
+ * Betweenness is returned as a double[] indexed by the edge ids of the
+ * graph. Since CSRGraph is immutable, Girvan Newman removes edges by marking
+ * them in a boolean[] 'removed' (also indexed by edge id) which the BFS
+ * skips, so the graph itself never has to be rebuilt.
+ *
+ * As in CapGraph.edgeBetweenness(), the contributions of every source are
+ * summed, so in an undirected graph each pair of vertices is counted from
+ * both of its ends.
+ *
+ * In parallel mode the source vertices are split into ranges over a
+ * ForkJoinPool. Every range sums its sources into a scratch array of the
+ * thread running it, reused across ranges and calls, and keeps only the
+ * edges its searches reached, so a range over a small component costs the
+ * size of that component and not the number of edges of the graph. The
+ * caller's thread then adds the ranges into the result one after the other.
+ * The ranges depend only on the number of sources and the parallelism of the
+ * pool, so repeated runs give the same result; compared to the serial mode
+ * only the order of the floating point additions differs. Too few sources to
+ * give every range MIN_RANGE_SIZE of them are run serially.
+ */
+public class EdgeBetweenness {
+
+	// Number of leaf tasks per worker thread, to even out unequal BFS costs.
+	private static final int TASKS_PER_THREAD = 4;
+
+	// Fewest sources per range, so that forking pays for itself.
+	private static final int MIN_RANGE_SIZE = 8;
+
+	private final CSRGraph graph;
+
+	// Pool for the parallel mode, or null to run serially.
+	private final ForkJoinPool pool;
+
+	// BFS state of every thread, reused across sources and across calls.
+	private final ThreadLocal<BfsWorkspace> workspaces;
+
+	// Sums of the ranges run by every thread of the pool, all zero between ranges.
+	private final ThreadLocal<double[]> partials;
+
+	// Checked before every source, or null to always run to the end.
+	private RunControl control;
+
+	public EdgeBetweenness(CSRGraph graph) {
+		this(graph, null);
+	}
+
+	public EdgeBetweenness(CSRGraph graph, ForkJoinPool pool) {
+		if (graph.isDirected()) {
+			throw new IllegalArgumentException("Edge betweenness needs an undirected graph");
+		}
+		this.graph = graph;
+		this.pool = pool;
+		this.workspaces = ThreadLocal.withInitial(() -> new BfsWorkspace(graph));
+		this.partials = ThreadLocal.withInitial(() -> new double[graph.getNumEdges()]);
+	}
+
+	/*
+	 * Makes compute() and accumulate() throw a CancellationException, before
+	 * the next BFS source, once 'control' is stopped. The array passed to
+	 * accumulate() then holds the contributions of only some sources.
+	 */
+	public void setRunControl(RunControl control) {
+		this.control = control;
+	}
+
+	/*
+	 * Computes the betweenness of every edge which is not marked in 'removed'.
+	 * 'removed' may be null when all the edges are present.
+	 */
+	public double[] compute(boolean[] removed) {
+		double[] betweenness = new double[graph.getNumEdges()];
+		accumulate(null, graph.getNumNodes(), removed, betweenness);
+		return betweenness;
+	}
+
+	/*
+	 * Adds the contributions of the first 'count' vertices of 'sources' into
+	 * 'betweenness', or of every vertex if 'sources' is null.
+	 *
+	 * The contributions of a source only reach the edges of its own connected
+	 * component, so passing all the vertices of some components recomputes
+	 * the betweenness of exactly the edges of those components, once their
+	 * old values have been cleared.
+	 */
+	public void accumulate(int[] sources, int count, boolean[] removed, double[] betweenness) {
+		long begin = System.nanoTime();
+		int rangeSize = (pool == null) ? count
+				: Math.max(MIN_RANGE_SIZE, count / (pool.getParallelism() * TASKS_PER_THREAD));
+		if (count <= rangeSize) {
+			accumulate(sources, 0, count, removed, betweenness);
+		} else {
+			SourceRange[] ranges = new SourceRange[(count + rangeSize - 1) / rangeSize];
+			pool.invoke(new SourceRangeTask(sources, count, rangeSize, removed, ranges, 0, ranges.length));
+			for (SourceRange range : ranges) {
+				for (int i = 0; i < range.edges.length; i++) {
+					betweenness[range.edges[i]] += range.values[i];
+				}
+			}
+		}
+		Metrics.record(Metrics.Timer.BETWEENNESS_PASS, System.nanoTime() - begin);
+	}
+
+	/*
+	 * Adds the betweenness contributions of the sources sources[from .. to - 1]
+	 * (or of the vertices from .. to - 1 if 'sources' is null) into 'betweenness'.
+	 */
+	private void accumulate(int[] sources, int from, int to, boolean[] removed, double[] betweenness) {
+		accumulate(sources, from, to, removed, betweenness, null);
+	}
+
+	/*
+	 * Same as accumulate(sources, from, to, removed, betweenness), also
+	 * appending to 'touched' the edges whose entry in 'betweenness' was 0.
+	 */
+	private void accumulate(int[] sources, int from, int to, boolean[] removed, double[] betweenness,
+			IntList touched) {
+		BfsWorkspace workspace = workspaces.get();
+		for (int next = from; next < to; next++) {
+			if (control != null && control.isStopped()) {
+				workspace.flushMetrics();
+				control.checkStopped();
+			}
+			int s = (sources == null) ? next : sources[next];
+			workspace.search(s, removed);
+			if (touched == null) {
+				workspace.accumulate(betweenness, 1);
+			} else {
+				workspace.accumulate(betweenness, touched);
+			}
+			workspace.reset();
+		}
+		workspace.flushMetrics();
+	}
+
+	/*
+	 * Sum of the contributions of one range of sources, over only the edges
+	 * they reach.
+	 */
+	private static class SourceRange {
+
+		final int[] edges;
+		final double[] values;
+
+		SourceRange(int[] edges, double[] values) {
+			this.edges = edges;
+			this.values = values;
+		}
+	}
+
+	/*
+	 * Splits the ranges first .. last - 1 in halves until one is left, which
+	 * is summed into the scratch array of the thread and stored in ranges[first].
+	 */
+	private class SourceRangeTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int[] sources;
+		private final int count;
+		private final int rangeSize;
+		private final boolean[] removed;
+		private final SourceRange[] ranges;
+		private final int first;
+		private final int last;
+
+		SourceRangeTask(int[] sources, int count, int rangeSize, boolean[] removed,
+				SourceRange[] ranges, int first, int last) {
+			this.sources = sources;
+			this.count = count;
+			this.rangeSize = rangeSize;
+			this.removed = removed;
+			this.ranges = ranges;
+			this.first = first;
+			this.last = last;
+		}
+
+		@Override
+		protected void compute() {
+			if (last - first == 1) {
+				double[] partial = partials.get();
+				IntList touched = new IntList();
+				int from = first * rangeSize;
+				try {
+					accumulate(sources, from, Math.min(from + rangeSize, count), removed, partial, touched);
+				} finally {
+					// Leaves the scratch array zero, even after a cancellation.
+					int[] edges = touched.toArray();
+					double[] values = new double[edges.length];
+					for (int i = 0; i < edges.length; i++) {
+						values[i] = partial[edges[i]];
+						partial[edges[i]] = 0;
+					}
+					ranges[first] = new SourceRange(edges, values);
+				}
+				return;
+			}
+			int mid = (first + last) >>> 1;
+			invokeAll(new SourceRangeTask(sources, count, rangeSize, removed, ranges, first, mid),
+					new SourceRangeTask(sources, count, rangeSize, removed, ranges, mid, last));
+		}
+	}
+
+}
@@ -0,0 +1,161 @@
+package graph;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Least recently used cache of egonets keyed by center label, bounded by the
+ * total weight of the cached egonets, where the weight of an egonet is its
+ * number of vertices plus its number of edges. Large egonets, which are the
+ * expensive ones to rebuild, therefore take up more of the budget than small
+ * ones, and an egonet heavier than the whole budget is never kept.
+ *
+ * The cache does not watch the graph: the graph calls edgeChanged() for every
+ * edge it adds or removes, and the egonets that the edge belongs to are
+ * dropped. The cached egonets are shared with the callers and must not be
+ * modified.
+ */
+public class EgonetCache {
+
+	private final long maxWeight;
+
+	// Egonets in access order, least recently used first, and their weights.
+	private final LinkedHashMap<Integer, Graph> egonets;
+	private final Map<Integer, Long> weights;
+	private long weight;
+
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long invalidations;
+
+	public EgonetCache(long maxWeight) {
+		this.maxWeight = maxWeight;
+		this.egonets = new LinkedHashMap<>(16, 0.75f, true);
+		this.weights = new HashMap<>();
+	}
+
+	/*
+	 * Returns the cached egonet of 'center', or null, and counts the hit or miss.
+	 */
+	public Graph get(int center) {
+		Graph egonet = egonets.get(center);
+		if (egonet == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return egonet;
+	}
+
+	/*
+	 * Caches the egonet of 'center', evicting the least recently used egonets
+	 * until the total weight is within the budget again.
+	 */
+	public void put(int center, Graph egonet) {
+		invalidate(center);
+		long w = weightOf(egonet);
+		if (w > maxWeight) {
+			return;
+		}
+		egonets.put(center, egonet);
+		weights.put(center, w);
+		weight += w;
+		Iterator<Map.Entry<Integer, Graph>> it = egonets.entrySet().iterator();
+		while (weight > maxWeight && it.hasNext()) {
+			int eldest = it.next().getKey();
+			it.remove();
+			weight -= weights.remove(eldest);
+			evictions++;
+		}
+	}
+
+	public boolean contains(int center) {
+		return egonets.containsKey(center);
+	}
+
+	/*
+	 * Drops the egonet of 'center' if it is cached.
+	 */
+	public void invalidate(int center) {
+		if (egonets.remove(center) != null) {
+			weight -= weights.remove(center);
+			invalidations++;
+		}
+	}
+
+	/*
+	 * Called by the graph when the edge between u and v was added or removed.
+	 * The edge is in the egonets of u, of v and of every common neighbor of
+	 * u and v, whose neighbors are given.
+	 */
+	public void edgeChanged(int u, int v, Set<Integer> neighborsOfU, Set<Integer> neighborsOfV) {
+		if (egonets.isEmpty()) {
+			return;
+		}
+		invalidate(u);
+		invalidate(v);
+		Set<Integer> smaller = neighborsOfU;
+		Set<Integer> larger = neighborsOfV;
+		if (smaller.size() > larger.size()) {
+			smaller = neighborsOfV;
+			larger = neighborsOfU;
+		}
+		for (int w : smaller) {
+			if (egonets.containsKey(w) && larger.contains(w)) {
+				invalidate(w);
+			}
+		}
+	}
+
+	public void clear() {
+		egonets.clear();
+		weights.clear();
+		weight = 0;
+	}
+
+	// Vertices plus edges of the egonet.
+	private static long weightOf(Graph egonet) {
+		if (egonet instanceof ReadableGraph) {
+			ReadableGraph g = (ReadableGraph) egonet;
+			return (long) g.getNumNodes() + g.getNumEdges();
+		}
+		long w = 0;
+		for (Set<Integer> neighbors : egonet.exportGraph().values()) {
+			w += 1 + neighbors.size();
+		}
+		return w;
+	}
+
+	public int size() {
+		return egonets.size();
+	}
+
+	public long getWeight() {
+		return weight;
+	}
+
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public long getEvictions() {
+		return evictions;
+	}
+
+	public long getInvalidations() {
+		return invalidations;
+	}
+
+}
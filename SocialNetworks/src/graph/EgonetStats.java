@@ -0,0 +1,187 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Size, edge count and density of the egonets of many centers, computed
+ * without building the egonets.
+ *
+ * The egonet of c is the same as CSRGraph.getEgonet(c): c, its neighbors,
+ * the edges from c and every edge between two neighbors. Since rows are
+ * sorted, the edges between neighbors are counted by intersecting the row
+ * of every neighbor with the row of c. A merge is used when the rows have
+ * similar lengths and a binary search of the shorter row's entries in the
+ * longer row otherwise.
+ *
+ * In parallel mode the centers are split into ranges over a ForkJoinPool.
+ * Every center is computed on its own, so both modes give the same result.
+ */
+public class EgonetStats {
+
+	// Centers per leaf task.
+	private static final int GRAIN = 64;
+
+	// Row length ratio above which intersections search instead of merging.
+	private static final int GALLOP_RATIO = 16;
+
+	private final CSRGraph graph;
+
+	// Dense ids of the centers and the statistics of each.
+	private final int[] centers;
+	private final int[] size;
+	private final long[] edges;
+
+	/*
+	 * Statistics for the given dense centers, or for every vertex if
+	 * 'centers' is null, in parallel over 'pool' if it is not null.
+	 */
+	public EgonetStats(CSRGraph graph, int[] centers, ForkJoinPool pool) {
+		this.graph = graph;
+		if (centers == null) {
+			centers = new int[graph.getNumNodes()];
+			for (int v = 0; v < centers.length; v++) {
+				centers[v] = v;
+			}
+		}
+		this.centers = centers;
+		this.size = new int[centers.length];
+		this.edges = new long[centers.length];
+		if (pool == null || centers.length <= GRAIN) {
+			computeRange(0, centers.length);
+		} else {
+			pool.invoke(new CenterRangeTask(0, centers.length));
+		}
+	}
+
+	private void computeRange(int from, int to) {
+		int[] offsets = graph.getOffsets();
+		int[] targets = graph.getTargets();
+		for (int i = from; i < to; i++) {
+			int c = centers[i];
+			int start = offsets[c];
+			int end = offsets[c + 1];
+			long between = 0;
+			for (int p = start; p < end; p++) {
+				int u = targets[p];
+				between += intersect(targets, start, end, offsets[u], offsets[u + 1]);
+			}
+			// An undirected edge between two neighbors is met from both ends.
+			if (!graph.isDirected()) {
+				between /= 2;
+			}
+			size[i] = end - start + 1;
+			edges[i] = (end - start) + between;
+		}
+	}
+
+	/*
+	 * Number of values shared by the sorted ranges a[aFrom..aTo) and a[bFrom..bTo).
+	 */
+	static int intersect(int[] a, int aFrom, int aTo, int bFrom, int bTo) {
+		int aLength = aTo - aFrom;
+		int bLength = bTo - bFrom;
+		if (aLength > bLength) {
+			return intersect(a, bFrom, bTo, aFrom, aTo);
+		}
+		int count = 0;
+		if (aLength * GALLOP_RATIO < bLength) {
+			// Search each entry of the short range, narrowing the long one as it goes.
+			int low = bFrom;
+			for (int i = aFrom; i < aTo && low < bTo; i++) {
+				int found = Arrays.binarySearch(a, low, bTo, a[i]);
+				if (found >= 0) {
+					count++;
+					low = found + 1;
+				} else {
+					low = -found - 1;
+				}
+			}
+			return count;
+		}
+		int i = aFrom;
+		int j = bFrom;
+		while (i < aTo && j < bTo) {
+			if (a[i] < a[j]) {
+				i++;
+			} else if (a[i] > a[j]) {
+				j++;
+			} else {
+				count++;
+				i++;
+				j++;
+			}
+		}
+		return count;
+	}
+
+	public int getNumCenters() {
+		return centers.length;
+	}
+
+	/*
+	 * Label of the i-th center.
+	 */
+	public int getCenter(int i) {
+		return graph.labelOf(centers[i]);
+	}
+
+	/*
+	 * Number of vertices in the egonet of the i-th center, the center included.
+	 */
+	public int getSize(int i) {
+		return size[i];
+	}
+
+	/*
+	 * Number of edges in the egonet of the i-th center.
+	 */
+	public long getEdges(int i) {
+		return edges[i];
+	}
+
+	/*
+	 * Edges of the egonet over the most it could have, 0 for an egonet of
+	 * a single vertex.
+	 */
+	public double getDensity(int i) {
+		long n = size[i];
+		if (n < 2) {
+			return 0;
+		}
+		double possible = graph.isDirected() ? n * (n - 1) : n * (n - 1) / 2.0;
+		return edges[i] / possible;
+	}
+
+	/*
+	 * Builds the egonet of the i-th center as a graph.
+	 */
+	public Graph getEgonet(int i) {
+		return graph.getEgonet(getCenter(i));
+	}
+
+	private class CenterRangeTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+
+		CenterRangeTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= GRAIN) {
+				computeRange(from, to);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new CenterRangeTask(from, mid), new CenterRangeTask(mid, to));
+		}
+	}
+
+}
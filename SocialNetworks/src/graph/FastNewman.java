@@ -7,6 +7,7 @@ import java.util.List;
 import java.util.Set;
 
 import util.GraphLoader;
+import util.Metrics;
 
 /**
  * Calculates dQ, change in modularity upon merging two communities
@@ -16,9 +17,9 @@ import util.GraphLoader;
 public class FastNewman {
 	
 	// Input graph for which we want to detect communities.
-	CapGraph inputGraph;
+	ReadableGraph inputGraph;
 	
-	public FastNewman(CapGraph graph) {
+	public FastNewman(ReadableGraph graph) {
 		this.inputGraph = graph;
 	}
 	
@@ -28,94 +29,46 @@ public class FastNewman {
 	 * as a list of vertices belonging to the respective communities.
 	 * dQ = e_ij + e_ji - 2*a_i*a_j
 	 * dQ = 2* (e_ij - a_i * a_j)
+	 * 
+	 * Every neighbor list of the two communities is visited once, so this
+	 * costs O(total degree of I and J). To evaluate many pairs while merging,
+	 * keep the sums up to date with a ModularityTracker instead.
 	 */
 	public double dQ(List<Integer> commI, List<Integer> commJ) {
-		// Get all the ID's of the two communities commI & commJ first in a Set.
-		Set<Integer> idSet_I = new HashSet<>();
-		idSet_I.addAll(commI);
-		
-		Set<Integer> idSet_J = new HashSet<>();
-		idSet_J.addAll(commJ);
-		
-		/*
-		 * e_ij  is fraction of number of edges between communities I and J compared to total edges.
-		 */
-		double e_ij = 0;
-		
-		Set<String> trackSet = new HashSet<>();
-		
-		for (int i : idSet_I) {
-			for (int j : idSet_J) {
-				if (trackSet.contains(i + "" + j) || trackSet.contains(j + "" + i)) {
-					continue;
-				}
-				trackSet.add(i + "" + j);
-				trackSet.add(j + "" + i);
-				e_ij += (inputGraph.isEdge(i, j)) ? 1 : 0;
-			}
-		}
-		
-		// Fraction of all edges which are between community I and community J
-		e_ij /= 2 * inputGraph.getNumEdges();
-		
+		Set<Integer> idSet_J = new HashSet<>(commJ);
 		
 		/*
-		 * All neighbors of nodes in community I.
+		 * Number of edges with one end in I and the other in J, and the total
+		 * degree of I: 2 * (edges internal to I) + edges with only one end in I.
 		 */
-		Set<Integer> setI = new HashSet<>();
-		for (int id_i : idSet_I) {
-			Set<Integer> neighborsI = inputGraph.getNeighbors(id_i);
-			setI.addAll(neighborsI);
-		}
-		
-		/*
-		 * All neighbors of nodes in community J.
-		 */
-		Set<Integer> setJ = new HashSet<>();
-		for (int id_j : idSet_J) {
-			Set<Integer> neighborsJ = inputGraph.getNeighbors(id_j);
-			setJ.addAll(neighborsJ);
-		}
-		
-		/*
-		 * a_i is the measure of total degree of nodes in community I.
-		 * total degree = 2 * (edges internal to community I) + edges with only one end in the community I.
-		 */
-		double a_i = 0;
-		for (int i : idSet_I) {
-			for (int j : setI) {
+		long edges_ij = 0;
+		long degree_i = 0;
+		for (int i : new HashSet<>(commI)) {
+			for (int j : inputGraph.getNeighbors(i)) {
+				degree_i++;
 				if (idSet_J.contains(j)) {
-					a_i += inputGraph.isEdge(i, j) ? 1 : 0;
-				} else {
-					a_i += inputGraph.isEdge(i, j) ? 1 : 0;
+					edges_ij++;
 				}
 			}
 		}
-		a_i /= (2 * inputGraph.getNumEdges());
-		
 		
-		/*
-		 * a_j is the measure of total degree of nodes in community J.
-		 * total degree = 2 * (edges internal to community J) + edges with only one end in the community J.
-		 */
-		double a_j = 0;
-		for (int i : idSet_J) {
-			for (int j : setJ) {
-				if (idSet_I.contains(j)) {
-					a_j += inputGraph.isEdge(i, j) ? 1 : 0;
-				} else {
-					a_j += inputGraph.isEdge(i, j) ? 1 : 0;
-				}
-			}
+		long degree_j = 0;
+		for (int j : idSet_J) {
+			degree_j += inputGraph.getNeighbors(j).size();
 		}
-		a_j /= (2 * inputGraph.getNumEdges());
 		
-		//System.out.println(e_ij + " " + a_i + " " + a_j);
+		double twoM = 2.0 * inputGraph.getNumEdges();
+		
+		// Fraction of all edges which are between community I and community J
+		double e_ij = edges_ij / twoM;
+		double a_i = degree_i / twoM;
+		double a_j = degree_j / twoM;
 		
 		/*
 		 * Total change in modularity deltaQ.
 		 */
 		double deltaQ = 2 * (e_ij - a_i * a_j);
+		Metrics.add(Metrics.Counter.DQ_EVALUATIONS, 1);
 		return deltaQ;
 	}
 
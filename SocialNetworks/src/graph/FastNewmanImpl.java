@@ -1,11 +1,21 @@
 package graph;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 
+import util.BestLevelSink;
+import util.ChannelWriter;
+import util.CheckpointFile;
 import util.GraphLoader;
+import util.Metrics;
+import util.PartitionSink;
+import util.TsvPartitionSink;
 
 /**
  * @author Bhargav Ram K S 
@@ -23,180 +33,302 @@ import util.GraphLoader;
  */
 public class FastNewmanImpl {
 	
+	public static final int CHECKPOINT_MAGIC = 0x434E4D4B;
+	public static final int CHECKPOINT_VERSION = 1;
+	
 	// Input graph on which algorithm operates.
-	private CapGraph inputGraph;
+	private ReadableGraph inputGraph;
 	
 	// Number of steps of iteration
 	private final int numSteps;
 	
 	/*
-	 * result contains the set of communities for each
-	 * of the numSteps + 1 number of iterations 
-	 * For example, the key 0 contains just the collection
-	 * of vertices as independent communities and as we
-	 * keep merging the subsequent steps contain the 
-	 * communities with each community having the lowest
-	 * member as the 'leader'.
+	 * dendrogram records the pair joined at each of the numSteps
+	 * iterations. The communities after any number of merges are
+	 * rebuilt from it on demand, each community having the lowest
+	 * member as the 'leader'; level 0 is every vertex on its own.
 	 */
-	Map<Integer, Map<Integer, List<Integer>>> result;
+	private Dendrogram dendrogram;
+	
+	// Time budget and cancellation of merge(), or null.
+	private RunControl control;
+	
+	// Where merge() saves its state and how often, or null.
+	private CheckpointFile checkpoint;
+	private long checkpointInterval;
 	
-	public FastNewmanImpl(CapGraph graph) {
+	// Checkpoint the next merge() starts from, or null to start over.
+	private Path resumeFrom;
+	
+	public FastNewmanImpl(ReadableGraph graph) {
 		this.inputGraph = graph;
 		int V = inputGraph.getNumNodes();
 		
-		// V - 1 iterations of running the merge() method.
+		/*
+		 * At most V - 1 merges. merge() stops earlier once no two
+		 * communities are joined by an edge, since merging those could
+		 * only lower Q.
+		 */
 		numSteps = V - 1;
-		
-		// Initialize result.
-		result = new HashMap<Integer, Map<Integer, List<Integer>>>();
-		
-		// Initial list of communities with each node as its own community.
-		Map<Integer, List<Integer>> init = new HashMap<>();
-		
-		for (int node : inputGraph.getNodes()) {
-			List<Integer> list = new ArrayList<>();
-			list.add(node);
-			init.put(node, list);
-		}
-		//System.out.println(init + "\n\n\n");
-		result.put(0, init);
+	}
+	
+	/*
+	 * Lets 'control' stop merge() between two merges and follow its
+	 * progress. A stopped merge() keeps the dendrogram of the merges made so
+	 * far, and publishes its best level to the control before returning.
+	 */
+	public void setRunControl(RunControl control) {
+		this.control = control;
+	}
+	
+	/*
+	 * Makes merge() save its state to 'path' in the background, at most every
+	 * 'intervalMillis' milliseconds and once more before it returns. The state
+	 * is the merge log with the community aggregates, so resuming does not
+	 * replay the merges.
+	 */
+	public void setCheckpoint(Path path, long intervalMillis) {
+		this.checkpoint = new CheckpointFile(path);
+		this.checkpointInterval = intervalMillis * 1000000L;
+	}
+	
+	/*
+	 * Makes the next merge() continue from a checkpoint saved by a run on the
+	 * same graph instead of starting over. It makes the same merges, with the
+	 * same dQ values, as the run that saved the checkpoint would have made.
+	 */
+	public void resumeFrom(Path path) {
+		this.resumeFrom = path;
 	}
 	
 	public void merge() {
-		// When all nodes are disconnected, modularity = 0.
-		double mod = 0;
+		try {
+			merge(null);
+		} catch (IOException e) {
+			// Without a sink only a checkpoint can fail.
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/*
+	 * Same as merge(), also handing every locally optimal partition to
+	 * 'sink' if it is not null. The sink is not closed.
+	 */
+	public void merge(PartitionSink sink) throws IOException {
+		/*
+		 * The pair to join at each step comes from the Clauset Newman Moore
+		 * heaps instead of trying every pair of communities with FastNewman.
+		 * The modularity starts at the value for all vertices apart.
+		 */
+		CSRGraph csr = CSRGraph.toUndirected(inputGraph);
+		ClausetNewmanMoore cnm;
+		double mod;
+		if (resumeFrom == null) {
+			cnm = new ClausetNewmanMoore(csr);
+			mod = cnm.getModularity();
+			dendrogram = new Dendrogram(csr.getLabels(), mod);
+		} else {
+			cnm = restore(csr, resumeFrom);
+			resumeFrom = null;
+			// Summed in the same order as below, so Q is the same to the last bit.
+			mod = dendrogram.getModularity(dendrogram.getNumMerges());
+		}
+		long fingerprint = (checkpoint == null) ? 0 : csr.fingerprint();
+		long lastCheckpoint = System.nanoTime();
+		
+		// Whether Q went up or stayed the same with the last merge.
+		int numMerges = dendrogram.getNumMerges();
+		boolean rising = numMerges == 0 || dendrogram.getDeltaQ(numMerges - 1) >= 0;
+		boolean finished = false;
 		
 		/*
-		 * Join two communities with highest increase in dQ each of the numsSteps steps.
+		 * Join two communities with highest increase in dQ each of the numsSteps steps,
+		 * until no two communities are joined by an edge any more.
 		 */
-		for (int i = 1; i <= numSteps; i++) {
+		for (int i = numMerges + 1; control == null || !control.isStopped(); i++) {
+			if (i > numSteps || !cnm.mergeBest()) {
+				finished = true;
+				break;
+			}
 			int prev = i - 1;
 			
-			// previous community arrangement for iteration i - 1
-			Map<Integer, List<Integer>> prevCommunity = result.get(prev);
+			// The maximum increase in modularity upon merging any two communities.
+			double deltaQ = cnm.getLastDeltaQ();
 			
-			// We find out the maximum increase in modularity upon merging any two communities.
-			double deltaQ = Double.NEGATIVE_INFINITY;
-			int communityIdOne = -1;
-			int communityIdTwo = -1;
-			
-			for (Integer keyOne : prevCommunity.keySet()) {
-				List<Integer> commOne = prevCommunity.get(keyOne);
-				for (Integer keyTwo : prevCommunity.keySet()) {
-					List<Integer> commTwo = prevCommunity.get(keyTwo);
-					
-					if (keyOne == keyTwo) {
-						continue;
-					}
-					
-					// Calculate deltaQ upon merging commOne and commTwo.
-					double tempDeltaQ = new FastNewman(inputGraph).dQ(commOne, commTwo);
-					
-					// Update if tempdeltaQ is higher than deltaQ.
-					if (tempDeltaQ > deltaQ) {
-						deltaQ = tempDeltaQ;
-						communityIdOne = keyOne;
-						communityIdTwo = keyTwo;
-					} else if (tempDeltaQ == deltaQ) {
-						//System.out.println("equal" + tempDeltaQ);
-					}
-				}
-			}
 			// Increment modularity with max deltaQ.
 			mod += deltaQ;
 			
-			// Get vertex label lists of the requisite communities.
-			List<Integer> commOneList = prevCommunity.get(communityIdOne);
-			List<Integer> commTwoList = prevCommunity.get(communityIdTwo);
-			
-			// Merge both the communities.
-			List<Integer> mergeCommList = new ArrayList<>();
-			mergeCommList.addAll(commOneList);
-			mergeCommList.addAll(commTwoList);
+			dendrogram.addMerge(csr.indexOf(cnm.getLastFirst()), csr.indexOf(cnm.getLastSecond()), deltaQ);
 			
-			// Update leaders for communities.
-			Map<Integer, List<Integer>> currentCommunity = new HashMap<>();
-			
-			for (Integer prevKey : prevCommunity.keySet()) {
-				if (prevKey != communityIdOne && prevKey != communityIdTwo) {
-					// Keep leaders of other communities the same.
-					currentCommunity.put(prevKey, prevCommunity.get(prevKey));
-				} else {
-					//System.out.println(deltaQ + " " + prevKey + ": Merge!");
+			if (control != null) {
+				control.progress(i, numSteps, mod);
+				if (control.wantsSnapshot(mod)) {
+					control.publish(i, mod, csr.getLabels(), dendrogram.membershipAt(i));
 				}
 			}
 			
-			// Update the leader for merged community.
-			int lesser = (communityIdOne < communityIdTwo) ? communityIdOne : communityIdTwo;
-			currentCommunity.put(lesser, mergeCommList);
-			
-			// Update results of current iteration.
-			result.put(i, currentCommunity);
-			
-			//System.out.println(currentCommunity + "\n\n\n");
-			
 			/*
 			 * Every time a maxima of Q is reached, in the next iteration
-			 * dQ < 0. Then we can print the previous community as a
+			 * dQ < 0. Then we can output the previous community as a
 			 * 'greedily' optimal community arrangement since it has 
-			 * locally maximal modularity. 
+			 * locally maximal modularity. The steps after it that keep
+			 * going down are not maxima, so their partitions are not
+			 * rebuilt from the dendrogram.
 			 */
 			if (deltaQ < 0) {
-				// maxima modularity
-				System.out.println(mod - deltaQ);
-				// maxima community
-				System.out.println(prevCommunity);
+				if (rising && sink != null) {
+					sink.accept(prev, mod - deltaQ, csr.getLabels(), dendrogram.membershipAt(prev));
+				}
+				rising = false;
+			} else {
+				rising = true;
+			}
+			
+			if (checkpoint != null && System.nanoTime() - lastCheckpoint >= checkpointInterval) {
+				saveCheckpoint(csr, fingerprint, cnm);
+				lastCheckpoint = System.nanoTime();
 			}
 		}
+		// The last level is a maxima too if Q did not go down to reach it.
+		if (finished && rising && sink != null) {
+			int last = dendrogram.getNumMerges();
+			sink.accept(last, mod, csr.getLabels(), dendrogram.membershipAt(last));
+		}
+		if (control != null) {
+			int best = dendrogram.getBestLevel();
+			control.publish(best, dendrogram.getModularity(best), csr.getLabels(), dendrogram.membershipAt(best));
+		}
+		if (checkpoint != null) {
+			saveCheckpoint(csr, fingerprint, cnm);
+			checkpoint.await();
+		}
+	}
+	
+	/*
+	 * Copies the state and hands it to the checkpoint writer. Layout, little
+	 * endian: int magic, int version, int numNodes, int numEdges,
+	 * long fingerprint, double initial Q, int numMerges, per merge
+	 * (int leafA, int leafB, double dQ), then the ClausetNewmanMoore state.
+	 */
+	private void saveCheckpoint(CSRGraph csr, long fingerprint, ClausetNewmanMoore cnm) throws IOException {
+		int n = csr.getNumNodes();
+		int m = csr.getNumEdges();
+		double initial = dendrogram.getModularity(0);
+		int numMerges = dendrogram.getNumMerges();
+		int[] childA = new int[numMerges];
+		int[] childB = new int[numMerges];
+		double[] dQ = new double[numMerges];
+		for (int k = 0; k < numMerges; k++) {
+			childA[k] = dendrogram.getChildA(k);
+			childB[k] = dendrogram.getChildB(k);
+			dQ[k] = dendrogram.getDeltaQ(k);
+		}
+		CheckpointFile.Content state = cnm.save();
+		checkpoint.submit(out -> {
+			out.putInt(CHECKPOINT_MAGIC);
+			out.putInt(CHECKPOINT_VERSION);
+			out.putInt(n);
+			out.putInt(m);
+			out.putLong(fingerprint);
+			out.putDouble(initial);
+			out.putInt(numMerges);
+			for (int k = 0; k < numMerges; k++) {
+				out.putInt(childA[k]);
+				out.putInt(childB[k]);
+				out.putDouble(dQ[k]);
+			}
+			state.writeTo(out);
+		});
+	}
+	
+	/*
+	 * Reads a checkpoint written by saveCheckpoint() into the dendrogram and
+	 * returns the restored ClausetNewmanMoore.
+	 */
+	private ClausetNewmanMoore restore(CSRGraph csr, Path path) throws IOException {
+		ByteBuffer in = CheckpointFile.read(path);
+		try {
+			if (in.getInt() != CHECKPOINT_MAGIC) {
+				throw new IOException(path + " is not a merge checkpoint");
+			}
+			int version = in.getInt();
+			if (version != CHECKPOINT_VERSION) {
+				throw new IOException(path + " has checkpoint version " + version + ", expected " + CHECKPOINT_VERSION);
+			}
+			int n = csr.getNumNodes();
+			if (in.getInt() != n || in.getInt() != csr.getNumEdges() || in.getLong() != csr.fingerprint()) {
+				throw new IOException(path + " was saved for another graph");
+			}
+			dendrogram = new Dendrogram(csr.getLabels(), in.getDouble());
+			int numMerges = in.getInt();
+			if (numMerges < 0 || numMerges > numSteps) {
+				throw new IOException(path + " has " + numMerges + " merges");
+			}
+			for (int k = 0; k < numMerges; k++) {
+				int a = in.getInt();
+				int b = in.getInt();
+				if (a < 0 || a >= n || b < 0 || b >= n) {
+					throw new IOException(path + " has an invalid merge " + k);
+				}
+				dendrogram.addMerge(a, b, in.getDouble());
+			}
+			return ClausetNewmanMoore.restore(csr, in);
+		} catch (BufferUnderflowException e) {
+			throw new IOException(path + " is truncated", e);
+		}
+	}
+	
+	/*
+	 * The merges made by the last call to merge(), or null before it.
+	 */
+	public Dendrogram getDendrogram() {
+		return dendrogram;
+	}
+	
+	/*
+	 * The communities with the highest modularity seen by merge().
+	 */
+	public Map<Integer, List<Integer>> getBestCommunities() {
+		return dendrogram.bestPartition();
 	}
 
 	// Main Driver for merge().
-	public static void main(String[] args) {
-		long begin = System.nanoTime();
+	public static void main(String[] args) throws IOException {
 		CapGraph g = new CapGraph();
 		GraphLoader.loadGraph(g, "./data/foodweb_big.txt");
 		
 		FastNewmanImpl impl = new FastNewmanImpl(g);
 		
-		impl.merge();
-		System.out.println("\n\n\n" + (double)(System.nanoTime() - begin) / 1000000000);
+		// Print the partition with the highest modularity as label, community lines.
+		ChannelWriter out = new ChannelWriter(Channels.newChannel(System.out), false);
+		try (PartitionSink sink = new BestLevelSink(new TsvPartitionSink(out))) {
+			impl.merge(sink);
+		}
+		System.out.print("\n\n\n" + Metrics.report());
 		
 		/*
-		 * 	Karate club results
+		 * 	Karate club results, best partition
 		 * 
-		 * 	0.45378647326699273
-			{0=[16, 0, 27, 30, 24, 28, 33, 9, 31, 19, 21, 23, 15], 
-			1=[1, 6, 17, 7, 5, 11, 12, 20], 
-			2=[2, 18, 22, 3, 10, 4, 13, 8, 14], 
-			25=[32, 25, 26, 29]}
-			
-			0.44619666048237483
-			{0=[16, 0, 27, 30, 24, 28, 33, 9, 31, 19, 21, 23, 15], 
-			1=[1, 6, 17, 7, 5, 11, 12, 20, 2, 18, 22, 3, 10, 4, 13, 8, 14], 
-			25=[32, 25, 26, 29]}
+		 * 	0.40419969640748854
+			{0=[0, 9, 15, 16, 19, 21, 23, 24, 27, 28, 30, 31, 33], 
+			1=[1, 5, 6, 7, 11, 12, 17, 20], 
+			2=[2, 3, 4, 8, 10, 13, 14, 18, 22], 
+			25=[25, 26, 29, 32]}
 			
-			0.43270365997638727
-			{0=[16, 0, 27, 30, 24, 28, 33, 9, 31, 19, 21, 23, 15, 32, 25, 26, 29], 
-			1=[1, 6, 17, 7, 5, 11, 12, 20, 2, 18, 22, 3, 10, 4, 13, 8, 14]}
-
+			Q is counted from -0.0496 with every vertex apart; counted from 0
+			as the pair scan used to, the same partition was at 0.4538.
 		 */
 		
 		/*
-		 * 	Political BOOKS
+		 * 	Political BOOKS, best partition
 		 * 
-		 * 	0.5155053707045932
-			{1=[1, 2, 4, 11, 16, 17, 56, 20, 13, 19, 7, 6, 5, 3, 8, 15, 26, 23, 12, 30, 18, 14, 22, 9, 33, 24, 34, 45, 27, 41, 48, 46, 25, 28, 10, 42, 55, 21, 54, 43, 40, 47, 44, 57, 36, 38, 39, 35, 37],
-			 49=[49, 58, 50], 
-			 51=[51, 68, 104, 105, 52, 70, 65, 66, 69, 59, 53, 86], 29=[29, 93, 88, 99, 78, 91, 92, 32, 79, 71, 81, 72, 84, 77, 76, 83, 73, 80, 75, 31, 89, 103, 82, 90, 94, 67, 98, 97, 95, 74, 102, 87, 101, 85, 60, 64, 61, 63, 100, 62, 96]}
-			
-			0.5148009317105526
-			{1=[1, 2, 4, 11, 16, 17, 56, 20, 13, 19, 7, 6, 5, 3, 8, 15, 26, 23, 12, 30, 18, 14, 22, 9, 33, 24, 34, 45, 27, 41, 48, 46, 25, 28, 10, 42, 55, 21, 54, 43, 40, 47, 44, 57, 36, 38, 39, 35, 37], 
-			49=[49, 58, 50, 51, 68, 104, 105, 52, 70, 65, 66, 69, 59, 53, 86], 
-			29=[29, 93, 88, 99, 78, 91, 92, 32, 79, 71, 81, 72, 84, 77, 76, 83, 73, 80, 75, 31, 89, 103, 82, 90, 94, 67, 98, 97, 95, 74, 102, 87, 101, 85, 60, 64, 61, 63, 100, 62, 96]}
+		 * 	0.5019744859395004
+			{1=[1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 30, 33, 34, 35, 36, 37, 38, 39, 40, 41, 42, 43, 44, 45, 46, 47, 48, 54, 55, 56, 57], 
+			49=[49, 50, 58], 
+			51=[51, 52, 53, 59, 65, 66, 68, 69, 70, 86, 104, 105], 
+			29=[29, 31, 32, 60, 61, 62, 63, 64, 67, 71, 72, 73, 74, 75, 76, 77, 78, 79, 80, 81, 82, 83, 84, 85, 87, 88, 89, 90, 91, 92, 93, 94, 95, 96, 97, 98, 99, 100, 101, 102, 103]}
 			
-			0.4607185277739213
-			{1=[1, 2, 4, 11, 16, 17, 56, 20, 13, 19, 7, 6, 5, 3, 8, 15, 26, 23, 12, 30, 18, 14, 22, 9, 33, 24, 34, 45, 27, 41, 48, 46, 25, 28, 10, 42, 55, 21, 54, 43, 40, 47, 44, 57, 36, 38, 39, 35, 37], 
-			29=[49, 58, 50, 51, 68, 104, 105, 52, 70, 65, 66, 69, 59, 53, 86, 29, 93, 88, 99, 78, 91, 92, 32, 79, 71, 81, 72, 84, 77, 76, 83, 73, 80, 75, 31, 89, 103, 82, 90, 94, 67, 98, 97, 95, 74, 102, 87, 101, 85, 60, 64, 61, 63, 100, 62, 96]}
+			Counted from 0 instead of -0.0135, the same partition was at 0.5155.
 		 */
 	}
 
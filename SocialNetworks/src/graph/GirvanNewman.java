@@ -0,0 +1,769 @@
+package graph;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+
+import util.ChannelWriter;
+import util.CheckpointFile;
+import util.GraphLoader;
+import util.IntList;
+import util.Metrics;
+import util.PartitionSink;
+
+/**
+ * Girvan Newman divisive community detection on a CSRGraph.
+ *
+ * This is the same algorithm as the driver in CapGraph.main(), but the graph
+ * stays immutable: removed edges are only marked in a boolean[] indexed by
+ * edge id and the betweenness lives in a double[] with the same indexing.
+ *
+ * The betweenness is also recomputed incrementally. Removing an edge only
+ * changes the shortest paths inside the connected component that contained
+ * it, and the betweenness of an edge only gets contributions from sources in
+ * its own component. So after each removal only the vertices of the affected
+ * components are used as BFS sources again, and the cached scores of the
+ * edges in every other component are kept. Once the graph has fallen apart
+ * into many components each iteration costs a small fraction of a full pass.
+ *
+ * For graphs where even one exact pass is too slow, useSampling() switches
+ * to ApproximateEdgeBetweenness, which estimates the betweenness of the
+ * affected components from a sample of their vertices.
+ *
+ * Modularity of the component partition, measured on the original graph, is
+ * kept up to date the same way. Q is a sum of one term per component, from
+ * the edges of the original graph inside it and its total degree, so a
+ * removal only replaces the terms of the components it split by the terms of
+ * their pieces, which are counted while the pieces are relabeled. Components
+ * that did not change cost nothing.
+ *
+ * run() records every iteration: the edges cut, Q and the number of
+ * communities after it. That log is the dendrogram of the divisive run; the
+ * partition of any level is rebuilt from it on demand. The run stops when
+ * the edges are gone, when Q has fallen a given margin below its peak, or
+ * when a given number of communities is reached, whichever comes first.
+ *
+ * A run can save checkpoints: the level log, the cached scores and the dirty
+ * vertices. Everything else follows from cutting the logged edges again, so
+ * resume() rebuilds the components and Q by replaying the cuts in the same
+ * order, which gives the same values bit for bit, and the resumed run goes
+ * on exactly as the saved one would have.
+ */
+public class GirvanNewman {
+
+	public static final int CHECKPOINT_MAGIC = 0x474E434B;
+	public static final int CHECKPOINT_VERSION = 1;
+
+	private final CSRGraph graph;
+
+	// Connected components of the remaining edges, with the removed flags.
+	private final ComponentTracker components;
+
+	// removed[e] is true once the edge with id e has been cut. Owned by 'components'.
+	private final boolean[] removed;
+
+	private int numRemainingEdges;
+
+	private final EdgeBetweenness betweenness;
+
+	// Cached betweenness of the remaining edges, null before the first pass.
+	private double[] scores;
+
+	/*
+	 * Vertices of the components that held the last removed edges, sorted,
+	 * whose edges need fresh betweenness in the next iteration.
+	 */
+	private int[] dirty;
+	private int numDirty;
+
+	// Search marks for collecting the dirty vertices.
+	private final int[] mark;
+	private int stamp;
+
+	// Sampling estimator and its target accuracy, or null for exact passes.
+	private ApproximateEdgeBetweenness sampler;
+	private double epsilon;
+	private double delta;
+
+	// Per component id: arcs of the original graph inside it (twice its
+	// edges) and total original degree.
+	private long[] internalArcs;
+	private long[] degreeSum;
+	private double modularity;
+
+	// Edge ids in the order they were cut, and where every level ends in it.
+	// Level 0 is the graph before any removal.
+	private final IntList removalOrder;
+	private final IntList levelEnd;
+	private double[] levelModularity;
+	private int[] levelCommunities;
+
+	// Stopping rules of run(): margin below the peak Q, and community count.
+	private double stopMargin = Double.POSITIVE_INFINITY;
+	private int targetCommunities = Integer.MAX_VALUE;
+
+	// Time budget and cancellation of run(), or null.
+	private RunControl control;
+
+	// Where run() saves its state, how often, and the graph it belongs to.
+	private CheckpointFile checkpoint;
+	private long checkpointInterval;
+	private long lastCheckpoint;
+	private long fingerprint;
+
+	public GirvanNewman(CSRGraph graph) {
+		this(graph, false);
+	}
+
+	/*
+	 * With 'parallel' set the betweenness of every iteration is computed on
+	 * the common ForkJoinPool.
+	 */
+	public GirvanNewman(CSRGraph graph, boolean parallel) {
+		this.graph = graph;
+		this.components = new ComponentTracker(graph);
+		this.removed = components.getRemoved();
+		this.numRemainingEdges = graph.getNumEdges();
+		this.betweenness = new EdgeBetweenness(graph, parallel ? ForkJoinPool.commonPool() : null);
+
+		int n = graph.getNumNodes();
+		this.dirty = new int[n];
+		this.mark = new int[n];
+		int[] offsets = graph.getOffsets();
+		int[] targets = graph.getTargets();
+		this.internalArcs = new long[Math.max(n, 1)];
+		this.degreeSum = new long[Math.max(n, 1)];
+		for (int v = 0; v < n; v++) {
+			int c = components.componentOf(v);
+			degreeSum[c] += offsets[v + 1] - offsets[v];
+			internalArcs[c] += offsets[v + 1] - offsets[v];
+		}
+		for (int c = 0; c < components.getIdBound(); c++) {
+			modularity += term(c);
+		}
+
+		this.removalOrder = new IntList();
+		this.levelEnd = new IntList();
+		this.levelModularity = new double[16];
+		this.levelCommunities = new int[16];
+		recordLevel();
+	}
+
+	private void emit(PartitionSink sink, int[] membership) throws IOException {
+		if (sink == null) {
+			return;
+		}
+		for (int v = 0; v < membership.length; v++) {
+			membership[v] = components.componentOf(v);
+		}
+		sink.accept(getNumLevels() - 1, modularity, graph.getLabels(), membership);
+	}
+
+	/*
+	 * Stop run() once Q has fallen more than 'margin' below the highest Q seen.
+	 */
+	public void setStopMargin(double margin) {
+		this.stopMargin = margin;
+	}
+
+	/*
+	 * Stop run() once there are at least 'count' communities.
+	 */
+	public void setTargetCommunities(int count) {
+		this.targetCommunities = count;
+	}
+
+	/*
+	 * Lets 'control' stop run(), also in the middle of an exact betweenness
+	 * pass, and follow its progress. The iteration cut short is dropped, so the
+	 * levels recorded so far stay valid, and the best of them is published
+	 * to the control when run() returns.
+	 */
+	public void setRunControl(RunControl control) {
+		this.control = control;
+		betweenness.setRunControl(control);
+	}
+
+	/*
+	 * Removes edges with maximum betweenness until no edge is left, one of
+	 * the stopping rules fires or the RunControl is stopped. Returns the
+	 * number of iterations run.
+	 */
+	public int run() {
+		try {
+			return run(null);
+		} catch (IOException e) {
+			// Without a sink only a checkpoint can fail.
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/*
+	 * Same as run(), also handing the starting partition and every partition
+	 * after an iteration that split a community to 'sink' if it is not null.
+	 * The community ids are those of the ComponentTracker. The sink is not
+	 * closed.
+	 */
+	public int run(PartitionSink sink) throws IOException {
+		int[] membership = (sink == null) ? null : new int[graph.getNumNodes()];
+		emit(sink, membership);
+		int iterations = 0;
+		// The peak over every recorded level, so that a resumed or repeated
+		// run stops where a single run would have.
+		double peak = getModularity(getBestLevel());
+		while (numRemainingEdges > 0 && components.getNumComponents() < targetCommunities) {
+			if (modularity < peak - stopMargin) {
+				break;
+			}
+			if (control != null && control.isStopped()) {
+				break;
+			}
+			int before = components.getNumComponents();
+			try {
+				removeMaxBetweennessEdges();
+			} catch (CancellationException e) {
+				break;
+			}
+			iterations++;
+			if (components.getNumComponents() != before) {
+				emit(sink, membership);
+			}
+			if (control != null) {
+				control.progress(removalOrder.size(), graph.getNumEdges(), modularity);
+				if (control.wantsSnapshot(modularity)) {
+					control.publish(getNumLevels() - 1, modularity, graph.getLabels(), currentMembership());
+				}
+			}
+			if (checkpoint != null && System.nanoTime() - lastCheckpoint >= checkpointInterval) {
+				checkpoint();
+			}
+			peak = Math.max(peak, modularity);
+		}
+		if (control != null) {
+			int best = getBestLevel();
+			control.publish(best, getModularity(best), graph.getLabels(), getMembership(best));
+		}
+		if (checkpoint != null) {
+			checkpoint();
+			checkpoint.await();
+		}
+		return iterations;
+	}
+
+	// Component id of every dense vertex.
+	private int[] currentMembership() {
+		int[] membership = new int[graph.getNumNodes()];
+		for (int v = 0; v < membership.length; v++) {
+			membership[v] = components.componentOf(v);
+		}
+		return membership;
+	}
+
+	/*
+	 * Estimate the betweenness from sampled sources instead of computing it
+	 * exactly, to within epsilon of the maximum possible betweenness with
+	 * probability 1 - delta. See ApproximateEdgeBetweenness.adaptive().
+	 */
+	public void useSampling(double epsilon, double delta, long seed) {
+		this.sampler = new ApproximateEdgeBetweenness(graph, seed);
+		this.epsilon = epsilon;
+		this.delta = delta;
+	}
+
+	public int getNumRemainingEdges() {
+		return numRemainingEdges;
+	}
+
+	/*
+	 * One Girvan Newman step: bring the betweenness of the remaining edges up
+	 * to date and remove all the edges with the maximum betweenness.
+	 * Returns the ids of the removed edges. Throws a CancellationException,
+	 * without removing anything, if the RunControl stops the pass.
+	 */
+	public int[] removeMaxBetweennessEdges() {
+		long begin = System.nanoTime();
+		GirvanNewmanIterationEvent event = Metrics.isRecording() ? new GirvanNewmanIterationEvent() : null;
+		if (event != null) {
+			event.begin();
+		}
+		int sources = (scores == null) ? graph.getNumNodes() : numDirty;
+		updateScores();
+
+		double maxBW = 0;
+		for (int e = 0; e < scores.length; e++) {
+			if (!removed[e] && scores[e] > maxBW) {
+				maxBW = scores[e];
+			}
+		}
+		int count = 0;
+		int[] cut = new int[numRemainingEdges];
+		for (int e = 0; e < scores.length; e++) {
+			if (!removed[e] && scores[e] == maxBW) {
+				cut[count++] = e;
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			scores[cut[i]] = 0;
+		}
+		cut(cut, 0, count);
+		int[] result = Arrays.copyOf(cut, count);
+		collectDirty(result);
+
+		Metrics.record(Metrics.Timer.GN_ITERATION, System.nanoTime() - begin);
+		if (event != null && event.shouldCommit()) {
+			event.level = getNumLevels() - 1;
+			event.sources = sources;
+			event.edgesRemoved = count;
+			event.remainingEdges = numRemainingEdges;
+			event.communities = components.getNumComponents();
+			event.modularity = modularity;
+			event.commit();
+		}
+		return result;
+	}
+
+	/*
+	 * Removes the edges edges[from .. to - 1] in this order, as one level.
+	 */
+	private void cut(int[] edges, int from, int to) {
+		for (int k = from; k < to; k++) {
+			if (components.removeEdge(edges[k])) {
+				splitModularity(components.getSplitOff(), components.getSplitFrom());
+			}
+			removalOrder.add(edges[k]);
+		}
+		numRemainingEdges -= to - from;
+		recordLevel();
+	}
+
+	/*
+	 * Makes run() save the state to 'path' in the background, at most every
+	 * 'intervalMillis' milliseconds and once more before it returns.
+	 */
+	public void setCheckpoint(Path path, long intervalMillis) {
+		this.checkpoint = new CheckpointFile(path);
+		this.checkpointInterval = intervalMillis * 1000000L;
+		this.lastCheckpoint = System.nanoTime();
+		this.fingerprint = graph.fingerprint();
+	}
+
+	/*
+	 * Saves the current state to the checkpoint file. The state is copied
+	 * here and written by another thread. Runs with sampled betweenness
+	 * cannot be saved, since the state of their random source is not.
+	 *
+	 * Layout, little endian: int magic, int version, int numNodes,
+	 * int numEdges, long fingerprint, int numLevels, int[] levelEnd,
+	 * int numRemoved, int[] removalOrder, int hasScores, double[numEdges]
+	 * scores if hasScores is 1, int numDirty, int[] dirty.
+	 */
+	public void checkpoint() throws IOException {
+		if (checkpoint == null) {
+			throw new IllegalStateException("No checkpoint file set");
+		}
+		if (sampler != null) {
+			throw new IllegalStateException("Sampled betweenness cannot be checkpointed");
+		}
+		int n = graph.getNumNodes();
+		int m = graph.getNumEdges();
+		long savedFingerprint = fingerprint;
+		int[] savedLevelEnd = levelEnd.toArray();
+		int[] savedOrder = removalOrder.toArray();
+		double[] savedScores = (scores == null) ? null : scores.clone();
+		int[] savedDirty = Arrays.copyOf(dirty, numDirty);
+		checkpoint.submit(out -> {
+			out.putInt(CHECKPOINT_MAGIC);
+			out.putInt(CHECKPOINT_VERSION);
+			out.putInt(n);
+			out.putInt(m);
+			out.putLong(savedFingerprint);
+			putInts(out, savedLevelEnd);
+			putInts(out, savedOrder);
+			out.putInt(savedScores == null ? 0 : 1);
+			if (savedScores != null) {
+				for (double score : savedScores) {
+					out.putDouble(score);
+				}
+			}
+			putInts(out, savedDirty);
+		});
+		lastCheckpoint = System.nanoTime();
+	}
+
+	// Writes the length of 'values' followed by the values.
+	private static void putInts(ChannelWriter out, int[] values) throws IOException {
+		out.putInt(values.length);
+		for (int value : values) {
+			out.putInt(value);
+		}
+	}
+
+	/*
+	 * Continues from a checkpoint saved by a run on the same graph, which has
+	 * to be built from the same file in the same way. Stopping rules, the run
+	 * control and the checkpoint file are not saved and have to be set again.
+	 */
+	public static GirvanNewman resume(CSRGraph graph, Path path, boolean parallel) throws IOException {
+		ByteBuffer in = CheckpointFile.read(path);
+		try {
+			if (in.getInt() != CHECKPOINT_MAGIC) {
+				throw new IOException(path + " is not a Girvan Newman checkpoint");
+			}
+			int version = in.getInt();
+			if (version != CHECKPOINT_VERSION) {
+				throw new IOException(path + " has checkpoint version " + version + ", expected " + CHECKPOINT_VERSION);
+			}
+			int m = graph.getNumEdges();
+			if (in.getInt() != graph.getNumNodes() || in.getInt() != m || in.getLong() != graph.fingerprint()) {
+				throw new IOException(path + " was saved for another graph");
+			}
+			GirvanNewman gn = new GirvanNewman(graph, parallel);
+			int[] ends = getInts(in);
+			int[] order = getInts(in);
+			if (ends.length == 0 || ends[0] != 0 || ends[ends.length - 1] != order.length) {
+				throw new IOException(path + " has an invalid level log");
+			}
+			for (int level = 1; level < ends.length; level++) {
+				if (ends[level] < ends[level - 1]) {
+					throw new IOException(path + " has an invalid level log");
+				}
+				for (int k = ends[level - 1]; k < ends[level]; k++) {
+					if (order[k] < 0 || order[k] >= m || gn.removed[order[k]]) {
+						throw new IOException(path + " has an invalid edge " + order[k]);
+					}
+				}
+				gn.cut(order, ends[level - 1], ends[level]);
+			}
+			if (in.getInt() != 0) {
+				gn.scores = new double[m];
+				for (int e = 0; e < m; e++) {
+					gn.scores[e] = in.getDouble();
+				}
+			}
+			int[] savedDirty = getInts(in);
+			for (int v : savedDirty) {
+				if (v < 0 || v >= graph.getNumNodes()) {
+					throw new IOException(path + " has an invalid vertex " + v);
+				}
+			}
+			System.arraycopy(savedDirty, 0, gn.dirty, 0, savedDirty.length);
+			gn.numDirty = savedDirty.length;
+			return gn;
+		} catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+			throw new IOException(path + " is truncated or corrupt", e);
+		}
+	}
+
+	// Reads a length followed by that many ints.
+	private static int[] getInts(ByteBuffer in) throws IOException {
+		int length = in.getInt();
+		if (length < 0 || 4L * length > in.remaining()) {
+			throw new IOException("Invalid array length " + length);
+		}
+		int[] values = new int[length];
+		for (int i = 0; i < length; i++) {
+			values[i] = in.getInt();
+		}
+		return values;
+	}
+
+	/*
+	 * Computes the betweenness from scratch on the first call. Afterwards only
+	 * the edges of the components touched by the last removal are cleared and
+	 * recomputed from the vertices of those components.
+	 */
+	private void updateScores() {
+		if (scores == null) {
+			if (sampler == null) {
+				scores = betweenness.compute(removed);
+			} else {
+				scores = sampler.adaptive(epsilon, delta, removed).getBetweenness();
+			}
+			numDirty = 0;
+			return;
+		}
+		if (numDirty == 0) {
+			return;
+		}
+		int[] offsets = graph.getOffsets();
+		int[] edgeIds = graph.getEdgeIds();
+		for (int k = 0; k < numDirty; k++) {
+			int v = dirty[k];
+			for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+				scores[edgeIds[i]] = 0;
+			}
+		}
+		if (sampler == null) {
+			try {
+				betweenness.accumulate(dirty, numDirty, removed, scores);
+			} catch (CancellationException e) {
+				// Some of the dirty scores are missing now, so start over next time.
+				scores = null;
+				throw e;
+			}
+		} else {
+			double[] estimate = sampler.adaptive(dirty, numDirty, epsilon, delta, removed).getBetweenness();
+			for (int k = 0; k < numDirty; k++) {
+				int v = dirty[k];
+				for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+					scores[edgeIds[i]] = estimate[edgeIds[i]];
+				}
+			}
+		}
+		numDirty = 0;
+	}
+
+	/*
+	 * Every component that held a removed edge, split or not, contains an
+	 * end point of it, so searching from those end points over the remaining
+	 * edges finds exactly the vertices whose betweenness may have changed.
+	 * They are the sources for the next betweenness update.
+	 */
+	private void collectDirty(int[] cut) {
+		stamp++;
+		numDirty = 0;
+		for (int e : cut) {
+			visit(graph.edgeSource(e));
+			visit(graph.edgeTarget(e));
+		}
+		// Ascending sources make the serial sums match a full recomputation.
+		Arrays.sort(dirty, 0, numDirty);
+	}
+
+	/*
+	 * Breadth First Search from s over the remaining edges, unless s was
+	 * reached already. The dirty array doubles as the queue, so the vertices
+	 * reached are appended to the dirty vertices.
+	 */
+	private void visit(int s) {
+		if (mark[s] == stamp) {
+			return;
+		}
+		int[] offsets = graph.getOffsets();
+		int[] targets = graph.getTargets();
+		int[] edgeIds = graph.getEdgeIds();
+
+		int head = numDirty;
+		mark[s] = stamp;
+		dirty[numDirty++] = s;
+		while (head < numDirty) {
+			int v = dirty[head++];
+			for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+				int w = targets[i];
+				if (!removed[edgeIds[i]] && mark[w] != stamp) {
+					mark[w] = stamp;
+					dirty[numDirty++] = w;
+				}
+			}
+		}
+	}
+
+	/*
+	 * Updates the modularity after the vertices 'piece' were split off from
+	 * the component 'rest' into a component of their own. Only the terms of
+	 * the two change, and both follow from the original edges of 'piece':
+	 * those inside it, and those to the rest.
+	 */
+	private void splitModularity(int[] piece, int rest) {
+		int id = components.componentOf(piece[0]);
+		if (id >= degreeSum.length) {
+			internalArcs = Arrays.copyOf(internalArcs, 2 * id);
+			degreeSum = Arrays.copyOf(degreeSum, 2 * id);
+		}
+		int[] offsets = graph.getOffsets();
+		int[] targets = graph.getTargets();
+		long inside = 0;
+		long across = 0;
+		long degree = 0;
+		for (int v : piece) {
+			degree += offsets[v + 1] - offsets[v];
+			for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+				int c = components.componentOf(targets[i]);
+				if (c == id) {
+					inside++;
+				} else if (c == rest) {
+					across++;
+				}
+			}
+		}
+		modularity -= term(rest);
+		internalArcs[rest] -= inside + 2 * across;
+		degreeSum[rest] -= degree;
+		internalArcs[id] = inside;
+		degreeSum[id] = degree;
+		modularity += term(rest) + term(id);
+	}
+
+	// Contribution of component c to Q: e_cc - a_c^2.
+	private double term(int c) {
+		double twoM = 2.0 * graph.getNumEdges();
+		if (twoM == 0) {
+			return 0;
+		}
+		double a = degreeSum[c] / twoM;
+		return internalArcs[c] / twoM - a * a;
+	}
+
+	private void recordLevel() {
+		int level = levelEnd.size();
+		if (level == levelModularity.length) {
+			levelModularity = Arrays.copyOf(levelModularity, 2 * level);
+			levelCommunities = Arrays.copyOf(levelCommunities, 2 * level);
+		}
+		levelEnd.add(removalOrder.size());
+		levelModularity[level] = modularity;
+		levelCommunities[level] = components.getNumComponents();
+	}
+
+	/*
+	 * Modularity of the current communities on the original graph.
+	 */
+	public double getModularity() {
+		return modularity;
+	}
+
+	public int getNumCommunities() {
+		return components.getNumComponents();
+	}
+
+	/*
+	 * Number of recorded levels: the starting graph and one per iteration.
+	 */
+	public int getNumLevels() {
+		return levelEnd.size();
+	}
+
+	public double getModularity(int level) {
+		return levelModularity[level];
+	}
+
+	public int getNumCommunities(int level) {
+		return levelCommunities[level];
+	}
+
+	/*
+	 * The level with the highest modularity, the earliest on ties.
+	 */
+	public int getBestLevel() {
+		int best = 0;
+		for (int level = 1; level < getNumLevels(); level++) {
+			if (levelModularity[level] > levelModularity[best]) {
+				best = level;
+			}
+		}
+		return best;
+	}
+
+	/*
+	 * Community id, in 0..k-1, of every dense vertex after 'level' iterations:
+	 * the connected components of the edges not yet cut at that level.
+	 */
+	public int[] getMembership(int level) {
+		int n = graph.getNumNodes();
+		boolean[] gone = new boolean[graph.getNumEdges()];
+		for (int k = 0; k < levelEnd.get(level); k++) {
+			gone[removalOrder.get(k)] = true;
+		}
+		int[] parent = new int[n];
+		for (int v = 0; v < n; v++) {
+			parent[v] = v;
+		}
+		for (int e = 0; e < gone.length; e++) {
+			if (!gone[e]) {
+				int a = find(parent, graph.edgeSource(e));
+				int b = find(parent, graph.edgeTarget(e));
+				parent[Math.max(a, b)] = Math.min(a, b);
+			}
+		}
+		for (int v = 0; v < n; v++) {
+			parent[v] = find(parent, v);
+		}
+		Communities.renumber(parent);
+		return parent;
+	}
+
+	private static int find(int[] parent, int i) {
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	/*
+	 * The communities after 'level' iterations, keyed by leader label, each a
+	 * list of labels.
+	 */
+	public Map<Integer, List<Integer>> getCommunities(int level) {
+		return Communities.byLeader(graph.getLabels(), getMembership(level));
+	}
+
+	/*
+	 * The communities at the level of highest modularity.
+	 */
+	public Map<Integer, List<Integer>> getBestCommunities() {
+		return getCommunities(getBestLevel());
+	}
+
+	/*
+	 * The current communities, which are the connected components of the
+	 * remaining edges, as lists of vertex labels.
+	 */
+	public List<List<Integer>> getCommunities() {
+		int n = graph.getNumNodes();
+		int[] slot = new int[components.getIdBound()];
+		Arrays.fill(slot, -1);
+		List<List<Integer>> communities = new ArrayList<>();
+		for (int v = 0; v < n; v++) {
+			int c = components.componentOf(v);
+			if (slot[c] < 0) {
+				slot[c] = communities.size();
+				communities.add(new ArrayList<>());
+			}
+			communities.get(slot[c]).add(graph.labelOf(v));
+		}
+		return communities;
+	}
+
+	/*
+	 * Formats an edge id as the (from, to) pair of labels, like graph.Edge.
+	 */
+	public String edgeToString(int e) {
+		return "(" + graph.labelOf(graph.edgeSource(e)) + ", " + graph.labelOf(graph.edgeTarget(e)) + ")";
+	}
+
+	/*
+	 * Program driver for Girvan Newman on the CSR backend.
+	 */
+	public static void main(String[] args) {
+		CSRGraph graph = GraphLoader.loadCSRGraph("./data/football.txt", false);
+		GirvanNewman gn = new GirvanNewman(graph, true);
+
+		// Stop once Q has clearly passed its peak, or after the time budget
+		// in seconds given as an argument.
+		gn.setStopMargin(0.1);
+		RunControl control = new RunControl();
+		if (args.length > 0) {
+			control.setTimeBudget((long) (Double.parseDouble(args[0]) * 1000));
+		}
+		gn.setRunControl(control);
+		gn.run();
+		for (int level = 0; level < gn.getNumLevels(); level++) {
+			System.out.println("level " + level + ": " + gn.getNumCommunities(level)
+					+ " communities, Q = " + gn.getModularity(level));
+		}
+		int best = gn.getBestLevel();
+		System.out.println("Best split after " + best + " iterations, Q = " + gn.getModularity(best));
+		System.out.println(gn.getBestCommunities());
+		System.out.print(Metrics.report());
+	}
+
+}
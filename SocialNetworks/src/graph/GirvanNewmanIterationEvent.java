@@ -0,0 +1,41 @@
+package graph;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder event for one GirvanNewman iteration, from the
+ * betweenness update to the removal of the edges with the maximum score.
+ * Only created once Flight Recorder is running, see Metrics.isRecording().
+ */
+@Name("graph.GirvanNewmanIteration")
+@Label("Girvan Newman Iteration")
+@Category({ "Community Detection", "Girvan Newman" })
+@Description("Betweenness update and edge removal of one iteration")
+@StackTrace(false)
+class GirvanNewmanIterationEvent extends Event {
+
+	@Label("Level")
+	int level;
+
+	@Label("Sources")
+	@Description("Vertices used as BFS sources for the betweenness update")
+	int sources;
+
+	@Label("Edges Removed")
+	int edgesRemoved;
+
+	@Label("Remaining Edges")
+	int remainingEdges;
+
+	@Label("Communities")
+	int communities;
+
+	@Label("Modularity")
+	double modularity;
+
+}
@@ -0,0 +1,130 @@
+package graph;
+
+import java.util.Arrays;
+
+/**
+ * Binary max-heap over the ids 0..capacity-1, each with a double priority,
+ * that can change or remove the priority of any id in O(log n).
+ *
+ * Equal priorities are ordered by ascending id, so the top of the heap is
+ * fully determined by its contents and not by the order of the updates.
+ */
+class IndexedMaxHeap {
+
+	private final int[] heap;
+	// Position of every id in heap, or -1 if it is not in the heap.
+	private final int[] position;
+	private final double[] priority;
+	private int size;
+
+	IndexedMaxHeap(int capacity) {
+		heap = new int[capacity];
+		position = new int[capacity];
+		priority = new double[capacity];
+		Arrays.fill(position, -1);
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean contains(int id) {
+		return position[id] >= 0;
+	}
+
+	int top() {
+		return heap[0];
+	}
+
+	double topPriority() {
+		return priority[heap[0]];
+	}
+
+	double priorityOf(int id) {
+		return priority[id];
+	}
+
+	/*
+	 * Inserts 'id' or changes its priority.
+	 */
+	void set(int id, double value) {
+		if (position[id] < 0) {
+			priority[id] = value;
+			heap[size] = id;
+			position[id] = size;
+			size++;
+			siftUp(size - 1);
+			return;
+		}
+		double old = priority[id];
+		priority[id] = value;
+		if (value > old) {
+			siftUp(position[id]);
+		} else {
+			siftDown(position[id]);
+		}
+	}
+
+	void remove(int id) {
+		int i = position[id];
+		if (i < 0) {
+			return;
+		}
+		size--;
+		position[id] = -1;
+		if (i == size) {
+			return;
+		}
+		int last = heap[size];
+		heap[i] = last;
+		position[last] = i;
+		siftUp(i);
+		siftDown(position[last]);
+	}
+
+	// True if id a belongs above id b.
+	private boolean above(int a, int b) {
+		return priority[a] > priority[b] || (priority[a] == priority[b] && a < b);
+	}
+
+	private void siftUp(int i) {
+		int id = heap[i];
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (!above(id, heap[parent])) {
+				break;
+			}
+			heap[i] = heap[parent];
+			position[heap[i]] = i;
+			i = parent;
+		}
+		heap[i] = id;
+		position[id] = i;
+	}
+
+	private void siftDown(int i) {
+		int id = heap[i];
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && above(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!above(heap[child], id)) {
+				break;
+			}
+			heap[i] = heap[child];
+			position[heap[i]] = i;
+			i = child;
+		}
+		heap[i] = id;
+		position[id] = i;
+	}
+
+}
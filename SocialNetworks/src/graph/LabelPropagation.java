@@ -0,0 +1,258 @@
+package graph;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import util.GraphLoader;
+
+/**
+ * Label propagation of Raghavan, Albert and Kumara, "Near linear time
+ * algorithm to detect community structures in large-scale networks"
+ * (Phys. Rev. E 76, 036106).
+ *
+ * Every vertex starts with its own label and repeatedly takes the label
+ * carried by most of its neighbors, keeping its current label when that is
+ * one of the most frequent and otherwise breaking ties at random. Groups of
+ * vertices that end up sharing a label are the communities.
+ *
+ * Only the frontier is visited in an iteration: the vertices with a
+ * neighbor that changed label in the previous one. The frontier is cut into
+ * chunks of CHUNK_SIZE vertices and each chunk draws its tie breaks from a
+ * SplittableRandom seeded with the seed, the iteration and the chunk.
+ * Labels are updated in place (asynchronously), which converges in fewer
+ * iterations than computing every new label from the old ones. In parallel
+ * mode the chunks run over a ForkJoinPool and read the labels other threads
+ * are writing, so only the serial mode is exactly repeatable for a seed.
+ */
+public class LabelPropagation {
+
+	static final int CHUNK_SIZE = 1024;
+
+	public static final int DEFAULT_MAX_ITERATIONS = 100;
+
+	private final CSRGraph graph;
+
+	// Pool for the parallel mode, or null to run serially.
+	private final ForkJoinPool pool;
+
+	private final long seed;
+	private final int maxIterations;
+
+	// Label counts of every thread, reused across vertices and iterations.
+	private final ThreadLocal<LabelCounter> counters;
+
+	// Current label (a dense vertex id) of every dense vertex.
+	private int[] labels;
+
+	private int numIterations;
+
+	public LabelPropagation(ReadableGraph graph, long seed) {
+		this(graph, seed, DEFAULT_MAX_ITERATIONS, null);
+	}
+
+	public LabelPropagation(ReadableGraph graph, long seed, int maxIterations, ForkJoinPool pool) {
+		this.graph = CSRGraph.toUndirected(graph);
+		this.pool = pool;
+		this.seed = seed;
+		this.maxIterations = maxIterations;
+		int n = this.graph.getNumNodes();
+		this.counters = ThreadLocal.withInitial(() -> new LabelCounter(n));
+	}
+
+	/*
+	 * Runs until no label changes or maxIterations iterations have passed.
+	 */
+	public void run() {
+		int n = graph.getNumNodes();
+		labels = new int[n];
+		int[] frontier = new int[n];
+		for (int v = 0; v < n; v++) {
+			labels[v] = v;
+			frontier[v] = v;
+		}
+		int frontierSize = n;
+		// Set for the vertices to visit in the next iteration.
+		byte[] active = new byte[n];
+
+		numIterations = 0;
+		while (frontierSize > 0 && numIterations < maxIterations) {
+			int numChunks = (frontierSize + CHUNK_SIZE - 1) / CHUNK_SIZE;
+			ChunkRangeTask task = new ChunkRangeTask(frontier, frontierSize, numIterations, 0, numChunks, active);
+			int changed = (pool == null) ? task.compute() : pool.invoke(task);
+			numIterations++;
+			if (changed == 0) {
+				break;
+			}
+			frontierSize = 0;
+			for (int v = 0; v < n; v++) {
+				if (active[v] != 0) {
+					frontier[frontierSize++] = v;
+					active[v] = 0;
+				}
+			}
+		}
+	}
+
+	/*
+	 * Updates the vertices of one chunk of the frontier and returns how many
+	 * changed label.
+	 */
+	private int propagate(int[] frontier, int frontierSize, int iteration, int chunk, byte[] active) {
+		int[] offsets = graph.getOffsets();
+		int[] targets = graph.getTargets();
+		long chunkSeed = seed ^ (((long) iteration << 32) | chunk) * 0x9E3779B97F4A7C15L;
+		SplittableRandom random = new SplittableRandom(chunkSeed);
+		LabelCounter counter = counters.get();
+		int changed = 0;
+		int end = Math.min(frontierSize, (chunk + 1) * CHUNK_SIZE);
+		for (int k = chunk * CHUNK_SIZE; k < end; k++) {
+			int v = frontier[k];
+			if (offsets[v] == offsets[v + 1]) {
+				continue;
+			}
+			for (int p = offsets[v]; p < offsets[v + 1]; p++) {
+				counter.add(labels[targets[p]]);
+			}
+			int current = labels[v];
+			int next = counter.pick(current, random);
+			counter.clear();
+			if (next != current) {
+				labels[v] = next;
+				changed++;
+				for (int p = offsets[v]; p < offsets[v + 1]; p++) {
+					active[targets[p]] = 1;
+				}
+			}
+		}
+		return changed;
+	}
+
+	public int getNumIterations() {
+		return numIterations;
+	}
+
+	/*
+	 * Community id, in 0..k-1, of every dense vertex.
+	 */
+	public int[] getMembership() {
+		int[] membership = labels.clone();
+		Communities.renumber(membership);
+		return membership;
+	}
+
+	/*
+	 * The communities keyed by leader label, each a list of labels, as in
+	 * FastNewmanImpl.
+	 */
+	public Map<Integer, List<Integer>> getCommunities() {
+		return Communities.byLeader(graph.getLabels(), labels);
+	}
+
+	/**
+	 * Counts of the labels around one vertex, in an array indexed by label
+	 * with the list of labels seen, so clearing costs only the degree.
+	 */
+	private static class LabelCounter {
+
+		private final int[] count;
+		private final int[] seen;
+		private int numSeen;
+
+		LabelCounter(int n) {
+			count = new int[n];
+			seen = new int[n];
+		}
+
+		void add(int label) {
+			if (count[label]++ == 0) {
+				seen[numSeen++] = label;
+			}
+		}
+
+		/*
+		 * The most frequent label, 'current' if it is one of them and
+		 * otherwise one of them chosen uniformly at random.
+		 */
+		int pick(int current, SplittableRandom random) {
+			int max = 0;
+			for (int i = 0; i < numSeen; i++) {
+				max = Math.max(max, count[seen[i]]);
+			}
+			if (count[current] == max) {
+				return current;
+			}
+			int chosen = -1;
+			int ties = 0;
+			for (int i = 0; i < numSeen; i++) {
+				// Reservoir sampling over the labels with the top count.
+				if (count[seen[i]] == max && random.nextInt(++ties) == 0) {
+					chosen = seen[i];
+				}
+			}
+			return chosen;
+		}
+
+		void clear() {
+			for (int i = 0; i < numSeen; i++) {
+				count[seen[i]] = 0;
+			}
+			numSeen = 0;
+		}
+	}
+
+	/**
+	 * Chunks from..to-1 of the frontier, split in halves down to one chunk.
+	 * Returns the number of vertices that changed label.
+	 */
+	private class ChunkRangeTask extends RecursiveTask<Integer> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int[] frontier;
+		private final int frontierSize;
+		private final int iteration;
+		private final int from;
+		private final int to;
+		private final byte[] active;
+
+		ChunkRangeTask(int[] frontier, int frontierSize, int iteration, int from, int to, byte[] active) {
+			this.frontier = frontier;
+			this.frontierSize = frontierSize;
+			this.iteration = iteration;
+			this.from = from;
+			this.to = to;
+			this.active = active;
+		}
+
+		@Override
+		protected Integer compute() {
+			if (to - from <= 1 || pool == null) {
+				int changed = 0;
+				for (int chunk = from; chunk < to; chunk++) {
+					changed += propagate(frontier, frontierSize, iteration, chunk, active);
+				}
+				return changed;
+			}
+			int mid = (from + to) >>> 1;
+			ChunkRangeTask left = new ChunkRangeTask(frontier, frontierSize, iteration, from, mid, active);
+			ChunkRangeTask right = new ChunkRangeTask(frontier, frontierSize, iteration, mid, to, active);
+			left.fork();
+			int changed = right.compute();
+			return changed + left.join();
+		}
+	}
+
+	public static void main(String[] args) {
+		String file = (args.length > 0) ? args[0] : "./data/twitter_higgs.txt";
+		long begin = System.nanoTime();
+		CSRGraph g = GraphLoader.loadCSRGraph(file, false);
+		LabelPropagation lp = new LabelPropagation(g, 42, DEFAULT_MAX_ITERATIONS, ForkJoinPool.commonPool());
+		lp.run();
+		System.out.println(lp.getCommunities().size() + " communities after " + lp.getNumIterations() + " iterations");
+		System.out.println((double) (System.nanoTime() - begin) / 1000000000);
+	}
+
+}
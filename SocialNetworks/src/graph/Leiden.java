@@ -0,0 +1,339 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import util.GraphLoader;
+
+/**
+ * Leiden method of Traag, Waltman and van Eck, "From Louvain to Leiden:
+ * guaranteeing well-connected communities" (Sci. Rep. 9, 5233), for
+ * modularity.
+ *
+ * Each level has three phases:
+ *  - fast local moving: a queue starts with every vertex. A vertex taken
+ *    off the queue joins the neighboring (or an empty) community with the
+ *    highest gain, and when it moves, its neighbors outside its new
+ *    community are queued again. Vertices whose surroundings did not
+ *    change are never looked at again, unlike the full sweeps of Louvain.
+ *  - refinement: inside every community the vertices start on their own
+ *    and are merged greedily, only into refined communities they have an
+ *    edge to and only while both sides are well connected to the rest of
+ *    the community. Every refined community is therefore connected.
+ *  - aggregation of the refined partition, where every aggregate vertex
+ *    starts in the community of the unrefined partition that holds it.
+ * The levels stop when local moving leaves every community a single vertex.
+ *
+ * The paper picks the refined community at random with a probability that
+ * grows with its gain. Here the best one is always taken, and the queue
+ * starts in ascending order of label, so a run is deterministic.
+ */
+public class Leiden {
+
+	private final CSRGraph graph;
+
+	// membership per level, of the input vertices, and the modularity of each.
+	private final List<int[]> levels;
+	private final List<Double> modularity;
+
+	public Leiden(ReadableGraph graph) {
+		this.graph = CSRGraph.toUndirected(graph);
+		this.levels = new ArrayList<>();
+		this.modularity = new ArrayList<>();
+	}
+
+	/*
+	 * Runs the levels until local moving leaves every community a single
+	 * vertex of the aggregate graph. A level is recorded whenever local
+	 * moving changed the partition. If it never does, as in a graph without
+	 * edges, whose modularity is taken as 0, the singletons are level 0.
+	 */
+	public void run() {
+		levels.clear();
+		modularity.clear();
+		WeightedGraph g = WeightedGraph.fromCSR(graph);
+		if (g.totalWeight == 0) {
+			addSingletons(0);
+			return;
+		}
+		int n = graph.getNumNodes();
+		// Aggregate vertex of every input vertex and community of every aggregate vertex.
+		int[] membership = new int[n];
+		int[] community = new int[n];
+		for (int v = 0; v < n; v++) {
+			membership[v] = v;
+			community[v] = v;
+		}
+		while (true) {
+			boolean moved = moveNodesFast(g, community);
+			int numCommunities = Communities.renumber(community);
+			if (moved) {
+				int[] partition = new int[n];
+				for (int v = 0; v < n; v++) {
+					partition[v] = community[membership[v]];
+				}
+				levels.add(partition);
+				modularity.add(g.modularity(community));
+			}
+			if (numCommunities == g.n) {
+				break;
+			}
+
+			int[] refined = refine(g, community);
+			int numRefined = Communities.renumber(refined);
+			if (!moved && numRefined == g.n) {
+				// Nothing moved and nothing merged: aggregating would give back
+				// the same graph and partition, so no later level can differ.
+				break;
+			}
+			int[] next = new int[numRefined];
+			for (int v = 0; v < g.n; v++) {
+				next[refined[v]] = community[v];
+			}
+			for (int v = 0; v < n; v++) {
+				membership[v] = refined[membership[v]];
+			}
+			g = g.aggregate(refined, numRefined);
+			community = next;
+		}
+		if (levels.isEmpty()) {
+			// Moving nothing from the singletons ends the first level, so g is still the input graph.
+			addSingletons(g.singletonModularity());
+		}
+	}
+
+	private void addSingletons(double q) {
+		int[] singletons = new int[graph.getNumNodes()];
+		for (int v = 0; v < singletons.length; v++) {
+			singletons[v] = v;
+		}
+		levels.add(singletons);
+		modularity.add(q);
+	}
+
+	/*
+	 * Queue based local moving over 'g', starting from and updating
+	 * 'community', whose ids must be below g.n. Returns true if any vertex
+	 * changed community.
+	 */
+	static boolean moveNodesFast(WeightedGraph g, int[] community) {
+		int n = g.n;
+		double twoM = 2 * g.totalWeight;
+		double[] tot = new double[n];
+		int[] size = new int[n];
+		for (int v = 0; v < n; v++) {
+			tot[community[v]] += g.strength[v];
+			size[community[v]]++;
+		}
+		// Ids of the communities without vertices.
+		int[] empty = new int[n];
+		int numEmpty = 0;
+		for (int c = n - 1; c >= 0; c--) {
+			if (size[c] == 0) {
+				empty[numEmpty++] = c;
+			}
+		}
+
+		// Circular queue of at most n vertices.
+		int[] queue = new int[n];
+		boolean[] queued = new boolean[n];
+		int head = 0;
+		int queueSize = n;
+		for (int v = 0; v < n; v++) {
+			queue[v] = v;
+			queued[v] = true;
+		}
+
+		double[] linkWeight = new double[n];
+		int[] touched = new int[n];
+		boolean moved = false;
+		while (queueSize > 0) {
+			int i = queue[head];
+			head = (head + 1 == n) ? 0 : head + 1;
+			queueSize--;
+			queued[i] = false;
+
+			int numTouched = 0;
+			for (int p = g.offsets[i]; p < g.offsets[i + 1]; p++) {
+				int c = community[g.targets[p]];
+				if (linkWeight[c] == 0) {
+					touched[numTouched++] = c;
+				}
+				linkWeight[c] += g.weights[p];
+			}
+
+			int old = community[i];
+			double k = g.strength[i];
+			tot[old] -= k;
+			size[old]--;
+			// Gains in units of m, measured from i on its own; an empty community gains 0.
+			int best = old;
+			double bestGain = linkWeight[old] - tot[old] * k / twoM;
+			for (int t = 0; t < numTouched; t++) {
+				int c = touched[t];
+				double gain = linkWeight[c] - tot[c] * k / twoM;
+				if (gain > bestGain) {
+					bestGain = gain;
+					best = c;
+				}
+				linkWeight[c] = 0;
+			}
+			linkWeight[old] = 0;
+			if (bestGain < 0 && size[old] > 0) {
+				best = empty[--numEmpty];
+			}
+			tot[best] += k;
+			size[best]++;
+			if (best == old) {
+				continue;
+			}
+			community[i] = best;
+			moved = true;
+			if (size[old] == 0) {
+				empty[numEmpty++] = old;
+			}
+			for (int p = g.offsets[i]; p < g.offsets[i + 1]; p++) {
+				int u = g.targets[p];
+				if (!queued[u] && community[u] != best) {
+					queue[(head + queueSize) % n] = u;
+					queueSize++;
+					queued[u] = true;
+				}
+			}
+		}
+		return moved;
+	}
+
+	/*
+	 * Refines each community of 'community' into well connected pieces and
+	 * returns the refined community of every vertex. The ids are vertex ids,
+	 * not necessarily consecutive.
+	 */
+	static int[] refine(WeightedGraph g, int[] community) {
+		int n = g.n;
+		double twoM = 2 * g.totalWeight;
+		// Total strength of every community of the unrefined partition.
+		double[] communityStrength = new double[n];
+		for (int v = 0; v < n; v++) {
+			communityStrength[community[v]] += g.strength[v];
+		}
+
+		int[] refined = new int[n];
+		int[] refinedSize = new int[n];
+		double[] refinedStrength = new double[n];
+		// Weight from every refined community to the rest of its community.
+		double[] external = new double[n];
+		for (int v = 0; v < n; v++) {
+			refined[v] = v;
+			refinedSize[v] = 1;
+			refinedStrength[v] = g.strength[v];
+			for (int p = g.offsets[v]; p < g.offsets[v + 1]; p++) {
+				if (community[g.targets[p]] == community[v]) {
+					external[v] += g.weights[p];
+				}
+			}
+		}
+
+		double[] linkWeight = new double[n];
+		int[] touched = new int[n];
+		for (int v = 0; v < n; v++) {
+			// Only vertices still on their own, and well connected to their community, move.
+			if (refinedSize[refined[v]] != 1) {
+				continue;
+			}
+			double k = g.strength[v];
+			double total = communityStrength[community[v]];
+			if (external[v] < k * (total - k) / twoM) {
+				continue;
+			}
+
+			int numTouched = 0;
+			for (int p = g.offsets[v]; p < g.offsets[v + 1]; p++) {
+				int u = g.targets[p];
+				if (community[u] != community[v]) {
+					continue;
+				}
+				int r = refined[u];
+				if (linkWeight[r] == 0) {
+					touched[numTouched++] = r;
+				}
+				linkWeight[r] += g.weights[p];
+			}
+
+			int own = refined[v];
+			int best = own;
+			double bestGain = 0;
+			for (int t = 0; t < numTouched; t++) {
+				int r = touched[t];
+				if (r != own && external[r] >= refinedStrength[r] * (total - refinedStrength[r]) / twoM) {
+					double gain = linkWeight[r] - refinedStrength[r] * k / twoM;
+					if (gain > bestGain) {
+						bestGain = gain;
+						best = r;
+					}
+				}
+			}
+			if (best != own) {
+				// The edges between v and best are now inside best.
+				external[best] += external[own] - 2 * linkWeight[best];
+				refinedStrength[best] += k;
+				refinedSize[best]++;
+				refinedSize[own] = 0;
+				refined[v] = best;
+			}
+			for (int t = 0; t < numTouched; t++) {
+				linkWeight[touched[t]] = 0;
+			}
+		}
+		return refined;
+	}
+
+	/*
+	 * Number of levels found by run(), at least 1.
+	 */
+	public int getNumLevels() {
+		return levels.size();
+	}
+
+	/*
+	 * Community id, in 0..k-1, of every dense vertex of the graph at 'level'.
+	 */
+	public int[] getMembership(int level) {
+		return levels.get(level).clone();
+	}
+
+	public double getModularity(int level) {
+		return modularity.get(level);
+	}
+
+	/*
+	 * The communities at 'level', keyed by leader label, each a list of labels.
+	 */
+	public Map<Integer, List<Integer>> getCommunities(int level) {
+		return Communities.byLeader(graph.getLabels(), levels.get(level));
+	}
+
+	/*
+	 * The communities of the last level.
+	 */
+	public Map<Integer, List<Integer>> getCommunities() {
+		return getCommunities(levels.size() - 1);
+	}
+
+	public static void main(String[] args) {
+		String file = (args.length > 0) ? args[0] : "./data/twitter_higgs.txt";
+		long begin = System.nanoTime();
+		CSRGraph g = GraphLoader.loadCSRGraph(file, false);
+		Leiden leiden = new Leiden(g);
+		leiden.run();
+		for (int level = 0; level < leiden.getNumLevels(); level++) {
+			int[] membership = leiden.getMembership(level);
+			int count = 1 + Arrays.stream(membership).max().orElse(-1);
+			System.out.println("level " + level + ": " + count + " communities, Q = " + leiden.getModularity(level));
+		}
+		System.out.println((double) (System.nanoTime() - begin) / 1000000000);
+	}
+
+}
@@ -0,0 +1,202 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import util.GraphLoader;
+
+/**
+ * Louvain method of Blondel, Guillaume, Lambiotte and Lefebvre, "Fast
+ * unfolding of communities in large networks" (J. Stat. Mech. P10008).
+ *
+ * Each level has two phases:
+ *  - local moving: every vertex in turn leaves its community and joins the
+ *    neighboring community with the highest modularity gain, until a sweep
+ *    over all vertices no longer raises modularity by MIN_IMPROVEMENT,
+ *  - aggregation: the communities become the vertices of a WeightedGraph
+ *    for the next level.
+ * The levels stop when local moving leaves every vertex where it was.
+ *
+ * The gain of moving an isolated vertex i with strength k_i into community
+ * c is k_i,c / m - tot_c * k_i / (2 m^2), where k_i,c is the weight of the
+ * edges from i into c and tot_c the total strength of c. tot is kept per
+ * community, so every candidate community costs O(1) and a sweep is linear
+ * in the size of the graph.
+ *
+ * Vertices are visited in ascending order of label and ties keep a vertex
+ * in its community, so a run is deterministic.
+ */
+public class Louvain {
+
+	// Smallest rise in modularity for another sweep of local moving.
+	static final double MIN_IMPROVEMENT = 1e-7;
+
+	private final CSRGraph graph;
+
+	// membership per level, of the input vertices, and the modularity of each.
+	private final List<int[]> levels;
+	private final List<Double> modularity;
+
+	public Louvain(ReadableGraph graph) {
+		this.graph = CSRGraph.toUndirected(graph);
+		this.levels = new ArrayList<>();
+		this.modularity = new ArrayList<>();
+	}
+
+	/*
+	 * Runs the levels until no vertex moves. Level 0 is the first partition
+	 * found, or the singletons if no vertex moves at all, as in a graph
+	 * without edges, whose modularity is taken as 0.
+	 */
+	public void run() {
+		levels.clear();
+		modularity.clear();
+		WeightedGraph current = WeightedGraph.fromCSR(graph);
+		if (current.totalWeight == 0) {
+			addSingletons(0);
+			return;
+		}
+		int[] membership = new int[graph.getNumNodes()];
+		for (int v = 0; v < membership.length; v++) {
+			membership[v] = v;
+		}
+		while (true) {
+			int[] community = new int[current.n];
+			for (int v = 0; v < current.n; v++) {
+				community[v] = v;
+			}
+			if (!moveNodes(current, community)) {
+				break;
+			}
+			int numCommunities = Communities.renumber(community);
+			for (int v = 0; v < membership.length; v++) {
+				membership[v] = community[membership[v]];
+			}
+			current = current.aggregate(community, numCommunities);
+			levels.add(membership.clone());
+			modularity.add(current.singletonModularity());
+			if (numCommunities == 1) {
+				break;
+			}
+		}
+		if (levels.isEmpty()) {
+			addSingletons(current.singletonModularity());
+		}
+	}
+
+	private void addSingletons(double q) {
+		int[] singletons = new int[graph.getNumNodes()];
+		for (int v = 0; v < singletons.length; v++) {
+			singletons[v] = v;
+		}
+		levels.add(singletons);
+		modularity.add(q);
+	}
+
+	/*
+	 * Local moving phase over 'g', starting from and updating 'community'.
+	 * Returns true if any vertex changed community.
+	 */
+	static boolean moveNodes(WeightedGraph g, int[] community) {
+		double m = g.totalWeight;
+		double twoM = 2 * m;
+		double[] tot = new double[g.n];
+		for (int v = 0; v < g.n; v++) {
+			tot[community[v]] += g.strength[v];
+		}
+		// Weight from the current vertex to each community, with the list of those touched.
+		double[] linkWeight = new double[g.n];
+		int[] touched = new int[g.n];
+		boolean moved = false;
+
+		double improvement;
+		do {
+			improvement = 0;
+			for (int i = 0; i < g.n; i++) {
+				int numTouched = 0;
+				for (int p = g.offsets[i]; p < g.offsets[i + 1]; p++) {
+					int c = community[g.targets[p]];
+					if (linkWeight[c] == 0) {
+						touched[numTouched++] = c;
+					}
+					linkWeight[c] += g.weights[p];
+				}
+
+				int old = community[i];
+				double k = g.strength[i];
+				tot[old] -= k;
+				// Gains in units of m, measured from i on its own.
+				int best = old;
+				double oldGain = linkWeight[old] - tot[old] * k / twoM;
+				double bestGain = oldGain;
+				for (int t = 0; t < numTouched; t++) {
+					int c = touched[t];
+					double gain = linkWeight[c] - tot[c] * k / twoM;
+					if (gain > bestGain) {
+						bestGain = gain;
+						best = c;
+					}
+					linkWeight[c] = 0;
+				}
+				linkWeight[old] = 0;
+				tot[best] += k;
+				if (best != old) {
+					community[i] = best;
+					improvement += (bestGain - oldGain) / m;
+					moved = true;
+				}
+			}
+		} while (improvement > MIN_IMPROVEMENT);
+		return moved;
+	}
+
+	/*
+	 * Number of levels found by run(), at least 1.
+	 */
+	public int getNumLevels() {
+		return levels.size();
+	}
+
+	/*
+	 * Community id, in 0..k-1, of every dense vertex of the graph at 'level'.
+	 */
+	public int[] getMembership(int level) {
+		return levels.get(level).clone();
+	}
+
+	public double getModularity(int level) {
+		return modularity.get(level);
+	}
+
+	/*
+	 * The communities at 'level', keyed by leader label, each a list of labels.
+	 */
+	public Map<Integer, List<Integer>> getCommunities(int level) {
+		return Communities.byLeader(graph.getLabels(), levels.get(level));
+	}
+
+	/*
+	 * The communities of the last, coarsest level, which has the highest
+	 * modularity.
+	 */
+	public Map<Integer, List<Integer>> getCommunities() {
+		return getCommunities(levels.size() - 1);
+	}
+
+	public static void main(String[] args) {
+		String file = (args.length > 0) ? args[0] : "./data/twitter_higgs.txt";
+		long begin = System.nanoTime();
+		CSRGraph g = GraphLoader.loadCSRGraph(file, false);
+		Louvain louvain = new Louvain(g);
+		louvain.run();
+		for (int level = 0; level < louvain.getNumLevels(); level++) {
+			int[] membership = louvain.getMembership(level);
+			int count = 1 + Arrays.stream(membership).max().orElse(-1);
+			System.out.println("level " + level + ": " + count + " communities, Q = " + louvain.getModularity(level));
+		}
+		System.out.println((double) (System.nanoTime() - begin) / 1000000000);
+	}
+
+}
@@ -0,0 +1,376 @@
+package graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import util.GraphLoader;
+import util.IntList;
+
+/**
+ * Read-only graph served straight from a memory mapped binary snapshot of a
+ * CSRGraph, so a job on a dataset that was converted once starts without
+ * parsing any text.
+ *
+ * The snapshot is a sequence of little endian ints:
+ *
+ *     header   magic, version, flags, numNodes, numEdges, numArcs, 0, 0
+ *     labels   numNodes ascending vertex labels (dense id -> label)
+ *     offsets  numNodes + 1 row starts into targets
+ *     targets  numArcs dense neighbor ids, sorted within every row
+ *     degrees  numNodes degrees, only if flags has HAS_DEGREES
+ *
+ * Bit DIRECTED of flags is set for a directed graph. The sections are
+ * mapped as IntBuffer views of the file and never copied; each must be
+ * under 2 GB.
+ */
+public class MappedGraph implements ReadableGraph {
+
+	public static final int MAGIC = 0x43535247;
+	public static final int VERSION = 1;
+
+	public static final int DIRECTED = 1;
+	public static final int HAS_DEGREES = 2;
+
+	private static final int HEADER_INTS = 8;
+
+	private final boolean directed;
+	private final int numNodes;
+	private final int numEdges;
+
+	private final IntBuffer labels;
+	private final IntBuffer offsets;
+	private final IntBuffer targets;
+	// Null if the snapshot has no degree section.
+	private final IntBuffer degrees;
+
+	private MappedGraph(boolean directed, int numNodes, int numEdges, IntBuffer labels,
+			IntBuffer offsets, IntBuffer targets, IntBuffer degrees) {
+		this.directed = directed;
+		this.numNodes = numNodes;
+		this.numEdges = numEdges;
+		this.labels = labels;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.degrees = degrees;
+	}
+
+	/*
+	 * Writes 'graph' as a snapshot, with the degree section if 'withDegrees'.
+	 */
+	public static void write(CSRGraph graph, String filename, boolean withDegrees) throws IOException {
+		int n = graph.getNumNodes();
+		int[] offsets = graph.getOffsets();
+		int flags = (graph.isDirected() ? DIRECTED : 0) | (withDegrees ? HAS_DEGREES : 0);
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+			int[] header = { MAGIC, VERSION, flags, n, graph.getNumEdges(), graph.getNumArcs(), 0, 0 };
+			writeInts(channel, buffer, header, header.length);
+			writeInts(channel, buffer, graph.getLabels(), n);
+			writeInts(channel, buffer, offsets, n + 1);
+			writeInts(channel, buffer, graph.getTargets(), graph.getNumArcs());
+			if (withDegrees) {
+				int[] degree = new int[n];
+				for (int v = 0; v < n; v++) {
+					degree[v] = offsets[v + 1] - offsets[v];
+				}
+				writeInts(channel, buffer, degree, n);
+			}
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+	}
+
+	// Appends the first 'count' values to the buffer, draining it to the channel when full.
+	private static void writeInts(FileChannel channel, ByteBuffer buffer, int[] values, int count) throws IOException {
+		for (int i = 0; i < count; i++) {
+			if (buffer.remaining() < 4) {
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				buffer.clear();
+			}
+			buffer.putInt(values[i]);
+		}
+	}
+
+	/*
+	 * Maps a snapshot written by write().
+	 */
+	public static MappedGraph open(String filename) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			IntBuffer header = map(channel, 0, HEADER_INTS, filename);
+			if (header.get(0) != MAGIC) {
+				throw new IOException(filename + " is not a graph snapshot");
+			}
+			if (header.get(1) != VERSION) {
+				throw new IOException(filename + " has snapshot version " + header.get(1) + ", expected " + VERSION);
+			}
+			int flags = header.get(2);
+			int n = header.get(3);
+			int numEdges = header.get(4);
+			int numArcs = header.get(5);
+			long expected = 4L * (HEADER_INTS + n + (n + 1) + numArcs + ((flags & HAS_DEGREES) != 0 ? n : 0));
+			if (channel.size() != expected) {
+				throw new IOException(filename + " is " + channel.size() + " bytes, expected " + expected);
+			}
+
+			long position = 4L * HEADER_INTS;
+			IntBuffer labels = map(channel, position, n, filename);
+			position += 4L * n;
+			IntBuffer offsets = map(channel, position, n + 1, filename);
+			position += 4L * (n + 1);
+			IntBuffer targets = map(channel, position, numArcs, filename);
+			position += 4L * numArcs;
+			IntBuffer degrees = null;
+			if ((flags & HAS_DEGREES) != 0) {
+				degrees = map(channel, position, n, filename);
+			}
+			return new MappedGraph((flags & DIRECTED) != 0, n, numEdges, labels, offsets, targets, degrees);
+		}
+	}
+
+	private static IntBuffer map(FileChannel channel, long position, int count, String filename) throws IOException {
+		if (4L * count > Integer.MAX_VALUE) {
+			throw new IOException(filename + " has a section over 2 GB");
+		}
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * count)
+				.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+	}
+
+	/*
+	 * Copies the snapshot into an in-memory CSRGraph, for the algorithms
+	 * that work on its arrays.
+	 */
+	public CSRGraph toCSRGraph() {
+		int[] labelArray = new int[numNodes];
+		for (int v = 0; v < numNodes; v++) {
+			labelArray[v] = labels.get(v);
+		}
+		int[] src = new int[numEdges];
+		int[] dst = new int[numEdges];
+		int next = 0;
+		for (int v = 0; v < numNodes; v++) {
+			for (int p = offsets.get(v); p < offsets.get(v + 1); p++) {
+				int w = targets.get(p);
+				// Every undirected edge is stored in both rows; take it from the lower one.
+				if (directed || v < w) {
+					src[next] = v;
+					dst[next] = w;
+					next++;
+				}
+			}
+		}
+		return CSRGraph.fromDenseEdges(labelArray, src, dst, next, directed);
+	}
+
+	public boolean isDirected() {
+		return directed;
+	}
+
+	@Override
+	public int getNumNodes() {
+		return numNodes;
+	}
+
+	@Override
+	public int getNumEdges() {
+		return numEdges;
+	}
+
+	/*
+	 * Dense id of the vertex with the given label or -1 if there is none.
+	 */
+	public int indexOf(int label) {
+		int low = 0;
+		int high = numNodes - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int value = labels.get(mid);
+			if (value < label) {
+				low = mid + 1;
+			} else if (value > label) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	public int labelOf(int v) {
+		return labels.get(v);
+	}
+
+	public int degree(int v) {
+		return (degrees != null) ? degrees.get(v) : offsets.get(v + 1) - offsets.get(v);
+	}
+
+	/*
+	 * The neighbors of the dense vertex v are target(offset(v)) ..
+	 * target(offset(v + 1) - 1).
+	 */
+	public int offset(int v) {
+		return offsets.get(v);
+	}
+
+	public int target(int p) {
+		return targets.get(p);
+	}
+
+	// Position of the dense vertex w in the row of v, or -1.
+	private int find(int v, int w) {
+		int low = offsets.get(v);
+		int high = offsets.get(v + 1) - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int value = targets.get(mid);
+			if (value < w) {
+				low = mid + 1;
+			} else if (value > w) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public boolean isEdge(int i, int j) {
+		int u = indexOf(i);
+		int v = indexOf(j);
+		if (u < 0 || v < 0) {
+			return false;
+		}
+		return find(u, v) >= 0 || (directed && find(v, u) >= 0);
+	}
+
+	@Override
+	public Set<Integer> getNodes() {
+		Set<Integer> nodes = new HashSet<>();
+		for (int v = 0; v < numNodes; v++) {
+			nodes.add(labels.get(v));
+		}
+		return nodes;
+	}
+
+	@Override
+	public Set<Integer> getNeighbors(int center) {
+		Set<Integer> neighbors = new HashSet<>();
+		int c = indexOf(center);
+		if (c >= 0) {
+			for (int p = offsets.get(c); p < offsets.get(c + 1); p++) {
+				neighbors.add(labels.get(targets.get(p)));
+			}
+		}
+		return neighbors;
+	}
+
+	@Override
+	public void addVertex(int num) {
+		throw new UnsupportedOperationException("MappedGraph is read-only");
+	}
+
+	@Override
+	public void addEdge(int from, int to) {
+		throw new UnsupportedOperationException("MappedGraph is read-only");
+	}
+
+	/* (non-Javadoc)
+	 * @see graph.Graph#getEgonet(int)
+	 * Same egonet as CSRGraph: the center, its neighbors, the edges from the
+	 * center and every edge between two neighbors, found by merging each
+	 * neighbor's sorted row with the row of the center.
+	 */
+	@Override
+	public Graph getEgonet(int center) {
+		int c = indexOf(center);
+		if (c < 0) {
+			return null;
+		}
+		int start = offsets.get(c);
+		int end = offsets.get(c + 1);
+		IntList from = new IntList();
+		IntList to = new IntList();
+		for (int p = start; p < end; p++) {
+			int v = targets.get(p);
+			from.add(center);
+			to.add(labels.get(v));
+			int i = start;
+			int q = offsets.get(v);
+			int qEnd = offsets.get(v + 1);
+			while (i < end && q < qEnd) {
+				int a = targets.get(i);
+				int b = targets.get(q);
+				if (a < b) {
+					i++;
+				} else if (a > b) {
+					q++;
+				} else {
+					from.add(labels.get(v));
+					to.add(labels.get(b));
+					i++;
+					q++;
+				}
+			}
+		}
+		int[] vertices = { center };
+		return CSRGraph.fromEdges(vertices, 1, from.array(), to.array(), from.size(), directed);
+	}
+
+	/*
+	 * SCCs need the whole graph anyway, so they run on an in-memory copy.
+	 */
+	@Override
+	public List<Graph> getSCCs() {
+		return toCSRGraph().getSCCs();
+	}
+
+	@Override
+	public HashMap<Integer, HashSet<Integer>> exportGraph() {
+		HashMap<Integer, HashSet<Integer>> export = new HashMap<>();
+		for (int v = 0; v < numNodes; v++) {
+			HashSet<Integer> row = new HashSet<>();
+			for (int p = offsets.get(v); p < offsets.get(v + 1); p++) {
+				row.add(labels.get(targets.get(p)));
+			}
+			export.put(labels.get(v), row);
+		}
+		return export;
+	}
+
+	/*
+	 * Converts an edge list into a snapshot:
+	 *     java graph.MappedGraph data/twitter_higgs.txt twitter_higgs.csr
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: MappedGraph <edge list> <snapshot> [directed]");
+			return;
+		}
+		boolean directed = args.length > 2 && Boolean.parseBoolean(args[2]);
+		CSRGraph graph = GraphLoader.loadCSRGraph(args[0], directed);
+		if (graph == null) {
+			return;
+		}
+		write(graph, args[1], true);
+		long begin = System.nanoTime();
+		MappedGraph mapped = open(args[1]);
+		System.out.println(mapped.getNumNodes() + " vertices, " + mapped.getNumEdges() + " edges, mapped in "
+				+ (double) (System.nanoTime() - begin) / 1000000 + " ms");
+	}
+
+}
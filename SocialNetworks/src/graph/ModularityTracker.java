@@ -0,0 +1,228 @@
+package graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import util.CheckpointFile;
+import util.IntDoubleHashMap;
+
+/**
+ * Keeps the aggregates of a partition of an undirected CSRGraph that
+ * modularity depends on, so that dQ for any pair of communities is O(1):
+ *  - the total degree of every community,
+ *  - the number of edges inside every community,
+ *  - the number of edges between every pair of adjacent communities.
+ *
+ * With m edges, a_i = degree_i / 2m and e_ij = links_ij / 2m, so joining
+ * communities i and j changes modularity by dQ = 2 * (e_ij - a_i * a_j).
+ *
+ * Communities start as single vertices and are numbered by the dense id of
+ * that vertex. Merging t into s costs O(number of communities next to t),
+ * since only the link counts of t have to be moved to s. All the aggregates
+ * are integers, so dQ only depends on the current partition and not on the
+ * order of the merges that produced it.
+ */
+public class ModularityTracker {
+
+	private final double twoM;
+
+	// Total degree and number of internal edges per community.
+	private final long[] degree;
+	private final long[] internal;
+
+	// links[i] maps each community adjacent to i to the number of edges
+	// between them, stored as exact integer valued doubles. Null once merged.
+	private final IntDoubleHashMap[] links;
+
+	private int numCommunities;
+	private double modularity;
+
+	// Calls of dQ() so far, for the metrics of the callers.
+	private long evaluations;
+
+	public ModularityTracker(CSRGraph graph) {
+		if (graph.isDirected()) {
+			throw new IllegalArgumentException("Modularity needs an undirected graph");
+		}
+		int n = graph.getNumNodes();
+		int[] offsets = graph.getOffsets();
+		int[] targets = graph.getTargets();
+		twoM = 2.0 * graph.getNumEdges();
+		degree = new long[n];
+		internal = new long[n];
+		links = new IntDoubleHashMap[n];
+		numCommunities = n;
+		for (int i = 0; i < n; i++) {
+			degree[i] = graph.degree(i);
+			links[i] = new IntDoubleHashMap(graph.degree(i));
+			for (int p = offsets[i]; p < offsets[i + 1]; p++) {
+				links[i].put(targets[p], 1);
+			}
+			double a = degree[i] / twoM;
+			modularity -= a * a;
+		}
+	}
+
+	/*
+	 * Change in modularity from joining the communities i and j.
+	 */
+	public double dQ(int i, int j) {
+		evaluations++;
+		double e = links[i].get(j, 0) / twoM;
+		return 2 * (e - (degree[i] / twoM) * (degree[j] / twoM));
+	}
+
+	/*
+	 * Merges community t into community s.
+	 */
+	public void merge(int t, int s) {
+		modularity += dQ(t, s);
+		IntDoubleHashMap rowT = links[t];
+		IntDoubleHashMap rowS = links[s];
+		for (int slot = 0; slot < rowT.capacity(); slot++) {
+			if (!rowT.isUsed(slot)) {
+				continue;
+			}
+			int k = rowT.keyAt(slot);
+			double count = rowT.valueAt(slot);
+			if (k == s) {
+				internal[s] += (long) count;
+				continue;
+			}
+			links[k].remove(t);
+			links[k].add(s, count);
+			rowS.add(k, count);
+		}
+		rowS.remove(t);
+		links[t] = null;
+		degree[s] += degree[t];
+		internal[s] += internal[t];
+		degree[t] = 0;
+		internal[t] = 0;
+		numCommunities--;
+	}
+
+	public double getModularity() {
+		return modularity;
+	}
+
+	public int getNumCommunities() {
+		return numCommunities;
+	}
+
+	/*
+	 * Number of times dQ() has been called, merge() included.
+	 */
+	public long getNumEvaluations() {
+		return evaluations;
+	}
+
+	public boolean isActive(int c) {
+		return links[c] != null;
+	}
+
+	public long getDegree(int c) {
+		return degree[c];
+	}
+
+	public long getInternalEdges(int c) {
+		return internal[c];
+	}
+
+	/*
+	 * Number of edges between the communities i and j.
+	 */
+	public long getLinks(int i, int j) {
+		return (long) links[i].get(j, 0);
+	}
+
+	/*
+	 * The communities adjacent to c with their link counts. Do not modify.
+	 */
+	IntDoubleHashMap neighbors(int c) {
+		return links[c];
+	}
+
+	/*
+	 * Copies the aggregates for a checkpoint, to be written later by another
+	 * thread: int numCommunities, double modularity, then per community
+	 * long degree, long internal, int row size (-1 once merged) and the row
+	 * as (int community, double count) pairs.
+	 */
+	CheckpointFile.Content save() {
+		int n = links.length;
+		int numCommunitiesNow = numCommunities;
+		double modularityNow = modularity;
+		long[] savedDegree = degree.clone();
+		long[] savedInternal = internal.clone();
+		int[] rowSize = new int[n];
+		int total = 0;
+		for (int i = 0; i < n; i++) {
+			rowSize[i] = (links[i] == null) ? -1 : links[i].size();
+			total += Math.max(rowSize[i], 0);
+		}
+		int[] keys = new int[total];
+		double[] counts = new double[total];
+		int next = 0;
+		for (int i = 0; i < n; i++) {
+			IntDoubleHashMap row = links[i];
+			if (row == null) {
+				continue;
+			}
+			for (int slot = 0; slot < row.capacity(); slot++) {
+				if (row.isUsed(slot)) {
+					keys[next] = row.keyAt(slot);
+					counts[next] = row.valueAt(slot);
+					next++;
+				}
+			}
+		}
+		return out -> {
+			out.putInt(numCommunitiesNow);
+			out.putDouble(modularityNow);
+			int k = 0;
+			for (int i = 0; i < n; i++) {
+				out.putLong(savedDegree[i]);
+				out.putLong(savedInternal[i]);
+				out.putInt(rowSize[i]);
+				for (int end = k + Math.max(rowSize[i], 0); k < end; k++) {
+					out.putInt(keys[k]);
+					out.putDouble(counts[k]);
+				}
+			}
+		};
+	}
+
+	/*
+	 * Reads back what save() wrote, for the same graph.
+	 */
+	static ModularityTracker restore(CSRGraph graph, ByteBuffer in) throws IOException {
+		ModularityTracker tracker = new ModularityTracker(graph);
+		int n = graph.getNumNodes();
+		tracker.numCommunities = in.getInt();
+		tracker.modularity = in.getDouble();
+		for (int i = 0; i < n; i++) {
+			tracker.degree[i] = in.getLong();
+			tracker.internal[i] = in.getLong();
+			int size = in.getInt();
+			if (size < -1 || size > n) {
+				throw new IOException("Invalid row size " + size);
+			}
+			if (size < 0) {
+				tracker.links[i] = null;
+				continue;
+			}
+			IntDoubleHashMap row = new IntDoubleHashMap(size);
+			for (int k = 0; k < size; k++) {
+				int key = in.getInt();
+				if (key < 0 || key >= n) {
+					throw new IOException("Invalid community " + key);
+				}
+				row.put(key, in.getDouble());
+			}
+			tracker.links[i] = row;
+		}
+		return tracker;
+	}
+
+}
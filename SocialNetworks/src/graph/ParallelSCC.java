@@ -0,0 +1,390 @@
+package graph;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import util.IntList;
+
+/**
+ * Parallel strongly connected components in the style of the Multistep
+ * method of Slota, Rajamanickam and Madduri, "BFS and coloring-based
+ * parallel algorithms for strongly connected components and related
+ * problems" (IPDPS 2014):
+ *  - trimming: a vertex without live in or out arcs is a component by
+ *    itself. Removing it lowers the degrees of its neighbors, which are
+ *    trimmed in the next round, until no vertex is left with a zero degree.
+ *  - forward-backward: the vertices both reachable from and reaching a
+ *    pivot of high degree form one component, usually the giant one. Both
+ *    searches are level synchronous breadth first searches whose levels
+ *    are expanded in parallel.
+ *  - coloring: every live vertex starts with its own id as color and the
+ *    largest color is pushed along the arcs until nothing changes. Each
+ *    vertex that kept its own color is the root of a component: the
+ *    vertices of its color that reach it. Those backward searches run in
+ *    parallel over the roots, and coloring repeats on what is left.
+ * Once fewer than SERIAL_CUTOFF vertices are left they are finished with
+ * the sequential Tarjan pass.
+ *
+ * Every vertex is claimed exactly once, with a compare and set on its
+ * component id, so the partition does not depend on the schedule; only the
+ * raw ids do, and StronglyConnectedComponents renumbers them.
+ */
+class ParallelSCC {
+
+	static final int SERIAL_CUTOFF = 1 << 12;
+
+	// Vertices (or frontier entries) per leaf task.
+	private static final int GRAIN = 1024;
+
+	private static final int ALIVE = -1;
+	private static final int CLAIMED = -2;
+
+	private final int n;
+	private final int[] offsets;
+	private final int[] targets;
+	// Transposed adjacency: the vertices with an arc into v.
+	private final int[] inOffsets;
+	private final int[] inTargets;
+	private final ForkJoinPool pool;
+
+	// Component id of every vertex, ALIVE while it has none.
+	private final AtomicIntegerArray component;
+	private final AtomicInteger nextComponent;
+
+	ParallelSCC(CSRGraph graph, ForkJoinPool pool) {
+		this.n = graph.getNumNodes();
+		this.offsets = graph.getOffsets();
+		this.targets = graph.getTargets();
+		this.pool = pool;
+		this.component = new AtomicIntegerArray(n);
+		this.nextComponent = new AtomicInteger();
+
+		// Counting sort of the arcs by target.
+		inOffsets = new int[n + 1];
+		for (int p = 0; p < targets.length; p++) {
+			inOffsets[targets[p] + 1]++;
+		}
+		for (int v = 0; v < n; v++) {
+			inOffsets[v + 1] += inOffsets[v];
+		}
+		inTargets = new int[targets.length];
+		int[] fill = new int[n];
+		System.arraycopy(inOffsets, 0, fill, 0, n);
+		for (int v = 0; v < n; v++) {
+			for (int p = offsets[v]; p < offsets[v + 1]; p++) {
+				inTargets[fill[targets[p]]++] = v;
+			}
+		}
+	}
+
+	/*
+	 * Component id of every vertex. The ids are distinct per component but
+	 * depend on the schedule.
+	 */
+	int[] run() {
+		for (int v = 0; v < n; v++) {
+			component.set(v, ALIVE);
+		}
+		trim();
+		forwardBackward();
+		while (countAlive() > SERIAL_CUTOFF) {
+			color();
+		}
+		finishSerially();
+
+		int[] result = new int[n];
+		for (int v = 0; v < n; v++) {
+			result[v] = component.get(v);
+		}
+		return result;
+	}
+
+	private boolean isAlive(int v) {
+		return component.get(v) == ALIVE;
+	}
+
+	// Gives v a component of its own if it is still alive.
+	private boolean claimSingleton(int v) {
+		if (component.compareAndSet(v, ALIVE, CLAIMED)) {
+			component.set(v, nextComponent.getAndIncrement());
+			return true;
+		}
+		return false;
+	}
+
+	private int countAlive() {
+		int alive = 0;
+		for (int v = 0; v < n; v++) {
+			if (isAlive(v)) {
+				alive++;
+			}
+		}
+		return alive;
+	}
+
+	/*
+	 * Repeatedly removes the vertices without live in or out arcs.
+	 */
+	private void trim() {
+		AtomicIntegerArray inDegree = new AtomicIntegerArray(n);
+		AtomicIntegerArray outDegree = new AtomicIntegerArray(n);
+		int[] frontier = new int[n];
+		AtomicInteger frontierSize = new AtomicInteger();
+		parallelFor(n, (from, to) -> {
+			for (int v = from; v < to; v++) {
+				inDegree.set(v, inOffsets[v + 1] - inOffsets[v]);
+				outDegree.set(v, offsets[v + 1] - offsets[v]);
+				if ((inDegree.get(v) == 0 || outDegree.get(v) == 0) && claimSingleton(v)) {
+					frontier[frontierSize.getAndIncrement()] = v;
+				}
+			}
+		});
+
+		int[] current = frontier;
+		int[] next = new int[n];
+		int size = frontierSize.get();
+		while (size > 0) {
+			int[] level = current;
+			int[] out = next;
+			AtomicInteger nextSize = new AtomicInteger();
+			parallelFor(size, (from, to) -> {
+				for (int k = from; k < to; k++) {
+					int v = level[k];
+					for (int p = offsets[v]; p < offsets[v + 1]; p++) {
+						int w = targets[p];
+						if (isAlive(w) && inDegree.decrementAndGet(w) == 0 && claimSingleton(w)) {
+							out[nextSize.getAndIncrement()] = w;
+						}
+					}
+					for (int p = inOffsets[v]; p < inOffsets[v + 1]; p++) {
+						int u = inTargets[p];
+						if (isAlive(u) && outDegree.decrementAndGet(u) == 0 && claimSingleton(u)) {
+							out[nextSize.getAndIncrement()] = u;
+						}
+					}
+				}
+			});
+			size = nextSize.get();
+			next = current;
+			current = out;
+		}
+	}
+
+	/*
+	 * Extracts the component of the live vertex with the largest product of
+	 * in and out degree.
+	 */
+	private void forwardBackward() {
+		int pivot = -1;
+		long best = -1;
+		for (int v = 0; v < n; v++) {
+			if (isAlive(v)) {
+				long score = (long) (offsets[v + 1] - offsets[v]) * (inOffsets[v + 1] - inOffsets[v]);
+				if (score > best) {
+					best = score;
+					pivot = v;
+				}
+			}
+		}
+		if (pivot < 0) {
+			return;
+		}
+		AtomicIntegerArray forward = reach(pivot, offsets, targets);
+		AtomicIntegerArray backward = reach(pivot, inOffsets, inTargets);
+		int id = nextComponent.getAndIncrement();
+		parallelFor(n, (from, to) -> {
+			for (int v = from; v < to; v++) {
+				if (forward.get(v) != 0 && backward.get(v) != 0) {
+					component.set(v, id);
+				}
+			}
+		});
+	}
+
+	/*
+	 * Marks the live vertices reachable from 'start' along the given
+	 * adjacency, one parallel step per BFS level.
+	 */
+	private AtomicIntegerArray reach(int start, int[] rowOffsets, int[] rowTargets) {
+		AtomicIntegerArray visited = new AtomicIntegerArray(n);
+		int[] current = new int[n];
+		int[] next = new int[n];
+		visited.set(start, 1);
+		current[0] = start;
+		int size = 1;
+		while (size > 0) {
+			int[] level = current;
+			int[] out = next;
+			AtomicInteger nextSize = new AtomicInteger();
+			parallelFor(size, (from, to) -> {
+				for (int k = from; k < to; k++) {
+					int v = level[k];
+					for (int p = rowOffsets[v]; p < rowOffsets[v + 1]; p++) {
+						int w = rowTargets[p];
+						if (isAlive(w) && visited.compareAndSet(w, 0, 1)) {
+							out[nextSize.getAndIncrement()] = w;
+						}
+					}
+				}
+			});
+			size = nextSize.get();
+			next = current;
+			current = out;
+		}
+		return visited;
+	}
+
+	/*
+	 * One round of coloring: propagates the largest color forward, then
+	 * collects the component of every root with a backward search limited
+	 * to its color.
+	 */
+	private void color() {
+		AtomicIntegerArray colors = new AtomicIntegerArray(n);
+		AtomicIntegerArray queued = new AtomicIntegerArray(n);
+		int[] current = new int[n];
+		int[] next = new int[n];
+		int size = 0;
+		for (int v = 0; v < n; v++) {
+			if (isAlive(v)) {
+				colors.set(v, v);
+				current[size++] = v;
+			}
+		}
+		while (size > 0) {
+			int[] level = current;
+			int[] out = next;
+			AtomicInteger nextSize = new AtomicInteger();
+			parallelFor(size, (from, to) -> {
+				for (int k = from; k < to; k++) {
+					int v = level[k];
+					queued.set(v, 0);
+					int c = colors.get(v);
+					for (int p = offsets[v]; p < offsets[v + 1]; p++) {
+						int w = targets[p];
+						if (!isAlive(w)) {
+							continue;
+						}
+						int old = colors.get(w);
+						while (c > old && !colors.compareAndSet(w, old, c)) {
+							old = colors.get(w);
+						}
+						if (c > old && queued.compareAndSet(w, 0, 1)) {
+							out[nextSize.getAndIncrement()] = w;
+						}
+					}
+				}
+			});
+			size = nextSize.get();
+			next = current;
+			current = out;
+		}
+
+		IntList roots = new IntList();
+		for (int v = 0; v < n; v++) {
+			if (isAlive(v) && colors.get(v) == v) {
+				roots.add(v);
+			}
+		}
+		int[] rootArray = roots.array();
+		parallelFor(roots.size(), (from, to) -> {
+			IntList queue = new IntList();
+			for (int k = from; k < to; k++) {
+				int root = rootArray[k];
+				int id = nextComponent.getAndIncrement();
+				component.set(root, id);
+				queue.clear();
+				queue.add(root);
+				for (int head = 0; head < queue.size(); head++) {
+					int v = queue.get(head);
+					for (int p = inOffsets[v]; p < inOffsets[v + 1]; p++) {
+						int u = inTargets[p];
+						// Only this search touches vertices of color 'root'.
+						if (colors.get(u) == root && isAlive(u)) {
+							component.set(u, id);
+							queue.add(u);
+						}
+					}
+				}
+			}
+		});
+	}
+
+	/*
+	 * Runs Tarjan's algorithm on the subgraph induced by the live vertices.
+	 */
+	private void finishSerially() {
+		int[] local = new int[n];
+		IntList vertices = new IntList();
+		for (int v = 0; v < n; v++) {
+			if (isAlive(v)) {
+				local[v] = vertices.size();
+				vertices.add(v);
+			}
+		}
+		int m = vertices.size();
+		if (m == 0) {
+			return;
+		}
+		int[] subOffsets = new int[m + 1];
+		IntList subTargets = new IntList();
+		for (int i = 0; i < m; i++) {
+			int v = vertices.get(i);
+			for (int p = offsets[v]; p < offsets[v + 1]; p++) {
+				if (isAlive(targets[p])) {
+					subTargets.add(local[targets[p]]);
+				}
+			}
+			subOffsets[i + 1] = subTargets.size();
+		}
+		int[] subComponent = StronglyConnectedComponents.tarjan(m, subOffsets, subTargets.array());
+		int base = nextComponent.get();
+		int count = 0;
+		for (int i = 0; i < m; i++) {
+			component.set(vertices.get(i), base + subComponent[i]);
+			count = Math.max(count, subComponent[i] + 1);
+		}
+		nextComponent.addAndGet(count);
+	}
+
+	private interface RangeBody {
+		void run(int from, int to);
+	}
+
+	// Runs body over 0..count-1, split in ranges of about GRAIN.
+	private void parallelFor(int count, RangeBody body) {
+		if (count <= GRAIN) {
+			body.run(0, count);
+		} else {
+			pool.invoke(new RangeTask(body, 0, count));
+		}
+	}
+
+	private static class RangeTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final RangeBody body;
+		private final int from;
+		private final int to;
+
+		RangeTask(RangeBody body, int from, int to) {
+			this.body = body;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= GRAIN) {
+				body.run(from, to);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new RangeTask(body, from, mid), new RangeTask(body, mid, to));
+		}
+	}
+
+}
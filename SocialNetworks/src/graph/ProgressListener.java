@@ -0,0 +1,16 @@
+package graph;
+
+/**
+ * Receives the progress of a run through its RunControl. It is called on the
+ * thread doing the run, after every step, so it should return quickly.
+ */
+public interface ProgressListener {
+
+	/*
+	 * 'done' of 'total' steps are over and the current partition has
+	 * modularity 'modularity'. For GirvanNewman a step is a removed edge, for
+	 * FastNewmanImpl a merge; a run may stop before 'total'.
+	 */
+	public void progress(long done, long total, double modularity);
+
+}
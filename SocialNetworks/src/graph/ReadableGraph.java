@@ -0,0 +1,38 @@
+package graph;
+
+import java.util.Set;
+
+/**
+ * Read-only queries that the community detection drivers need from a graph.
+ *
+ * Both the mutable CapGraph and the immutable CSRGraph implement this, so the
+ * modularity code in FastNewman and FastNewmanImpl can run on either backend.
+ */
+public interface ReadableGraph extends Graph {
+
+	/*
+	 * Number of vertices in the graph.
+	 */
+	public int getNumNodes();
+
+	/*
+	 * Number of edges in the graph. An undirected edge is counted once.
+	 */
+	public int getNumEdges();
+
+	/*
+	 * Labels of all the vertices in the graph.
+	 */
+	public Set<Integer> getNodes();
+
+	/*
+	 * Labels of the vertices adjacent to the vertex with label 'center'.
+	 */
+	public Set<Integer> getNeighbors(int center);
+
+	/*
+	 * Returns true if the vertices with labels i and j are joined by an edge.
+	 */
+	public boolean isEdge(int i, int j);
+
+}
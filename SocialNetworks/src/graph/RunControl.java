@@ -0,0 +1,168 @@
+package graph;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Time budget, cancellation, progress and best result so far of a long
+ * community detection run.
+ *
+ * The run checks the control cooperatively: GirvanNewman and FastNewmanImpl
+ * between steps and EdgeBetweenness before every BFS source, so a stop takes
+ * effect within one pass from one source. Stopping never leaves the run in a
+ * broken state; the partitions found so far stay available, and a stopped
+ * GirvanNewman can be run again under a new control.
+ *
+ * While it runs, the algorithm publishes a Snapshot of the best partition it
+ * has seen, at most once per snapshot interval since building one costs
+ * O(n), and always once more when it stops. getBest() may be called from any
+ * thread at any moment and returns the last published snapshot.
+ */
+public class RunControl {
+
+	// Deadline as a System.nanoTime() value, valid only if hasDeadline is set.
+	private volatile long deadline;
+	private volatile boolean hasDeadline;
+	private volatile boolean cancelled;
+
+	private ProgressListener listener;
+
+	private long snapshotInterval = 1000000000L;
+	private long lastSnapshot;
+	private volatile Snapshot best;
+
+	/*
+	 * Stop the run 'millis' milliseconds from now.
+	 */
+	public void setTimeBudget(long millis) {
+		deadline = System.nanoTime() + millis * 1000000L;
+		hasDeadline = true;
+	}
+
+	/*
+	 * Asks the run to stop at its next check. Safe to call from any thread.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/*
+	 * True once the run has been cancelled or its time budget is spent.
+	 */
+	public boolean isStopped() {
+		return cancelled || (hasDeadline && System.nanoTime() - deadline >= 0);
+	}
+
+	/*
+	 * Throws a CancellationException if isStopped(), for the loops that cannot
+	 * simply return a partial result.
+	 */
+	public void checkStopped() {
+		if (isStopped()) {
+			throw new CancellationException(cancelled ? "Run cancelled" : "Time budget spent");
+		}
+	}
+
+	public void setProgressListener(ProgressListener listener) {
+		this.listener = listener;
+	}
+
+	/*
+	 * Minimum time between two snapshots published while the run goes on.
+	 */
+	public void setSnapshotInterval(long millis) {
+		this.snapshotInterval = millis * 1000000L;
+	}
+
+	/*
+	 * Called by the run after every step.
+	 */
+	void progress(long done, long total, double modularity) {
+		if (listener != null) {
+			listener.progress(done, total, modularity);
+		}
+	}
+
+	/*
+	 * Whether the run should publish its current partition, of modularity
+	 * 'modularity': it beats the last snapshot and the interval has passed.
+	 */
+	boolean wantsSnapshot(double modularity) {
+		Snapshot current = best;
+		if (current != null && modularity <= current.modularity) {
+			return false;
+		}
+		return current == null || System.nanoTime() - lastSnapshot >= snapshotInterval;
+	}
+
+	/*
+	 * Publishes the partition of 'level' unless the last snapshot is better.
+	 * On a tie the new one wins, so the final publication of a run agrees
+	 * with its getBestLevel(). 'membership' is taken over by the snapshot.
+	 */
+	void publish(int level, double modularity, int[] labels, int[] membership) {
+		Snapshot current = best;
+		if (current != null && modularity < current.modularity) {
+			return;
+		}
+		best = new Snapshot(level, modularity, labels, membership);
+		lastSnapshot = System.nanoTime();
+	}
+
+	/*
+	 * The best partition published so far, or null before the first one.
+	 */
+	public Snapshot getBest() {
+		return best;
+	}
+
+	/**
+	 * An immutable partition published by a run: the level it was found at
+	 * (iterations of GirvanNewman, merges of FastNewmanImpl), its modularity
+	 * and a community id per dense vertex.
+	 */
+	public static class Snapshot {
+
+		private final int level;
+		private final double modularity;
+		private final int[] labels;
+		private final int[] membership;
+
+		Snapshot(int level, double modularity, int[] labels, int[] membership) {
+			this.level = level;
+			this.modularity = modularity;
+			this.labels = labels;
+			this.membership = membership;
+		}
+
+		public int getLevel() {
+			return level;
+		}
+
+		public double getModularity() {
+			return modularity;
+		}
+
+		public int[] getLabels() {
+			return Arrays.copyOf(labels, labels.length);
+		}
+
+		public int[] getMembership() {
+			return Arrays.copyOf(membership, membership.length);
+		}
+
+		/*
+		 * The communities keyed by leader label, each a list of labels.
+		 */
+		public Map<Integer, List<Integer>> getCommunities() {
+			return Communities.byLeader(labels, membership);
+		}
+	}
+
+}
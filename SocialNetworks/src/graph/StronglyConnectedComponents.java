@@ -0,0 +1,229 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import util.IntList;
+
+/**
+ * Strongly connected components of a CSRGraph, found by one pass of
+ * Tarjan's algorithm over the primitive adjacency arrays. The depth first
+ * search keeps its own call stack in an int[], so long paths cannot
+ * overflow the Java stack, and no reversed copy of the graph is needed.
+ *
+ * The result is a component id per dense vertex. The vertices and graphs
+ * of the components are only built when asked for. In an undirected graph
+ * the components are the connected components.
+ *
+ * Given a ForkJoinPool the components are found by ParallelSCC instead.
+ * Either way the components are numbered in ascending order of their lowest
+ * vertex, so both modes give exactly the same ids.
+ */
+public class StronglyConnectedComponents {
+
+	private final CSRGraph graph;
+
+	// Component id of every dense vertex, in 0..numComponents-1.
+	private final int[] component;
+	private final int numComponents;
+
+	// Vertices of component c, ascending: members[start[c]] .. members[start[c + 1] - 1].
+	// Built on first use.
+	private int[] start;
+	private int[] members;
+
+	public StronglyConnectedComponents(CSRGraph graph) {
+		this(graph, null);
+	}
+
+	/*
+	 * Runs in parallel over 'pool', or sequentially if it is null.
+	 */
+	public StronglyConnectedComponents(CSRGraph graph, ForkJoinPool pool) {
+		this.graph = graph;
+		if (pool == null) {
+			this.component = tarjan(graph.getNumNodes(), graph.getOffsets(), graph.getTargets());
+		} else {
+			this.component = new ParallelSCC(graph, pool).run();
+		}
+		this.numComponents = Communities.renumber(component);
+	}
+
+	/*
+	 * Tarjan's algorithm with an explicit call stack over the graph with n
+	 * vertices whose row v is targets[offsets[v]] .. targets[offsets[v + 1] - 1].
+	 * Returns the component id of every vertex, numbered in the order the
+	 * components are completed.
+	 */
+	static int[] tarjan(int n, int[] offsets, int[] targets) {
+		int[] index = new int[n];
+		int[] low = new int[n];
+		int[] component = new int[n];
+		boolean[] onStack = new boolean[n];
+		Arrays.fill(index, -1);
+
+		int[] stack = new int[n];
+		int stackSize = 0;
+		int[] callStack = new int[n];
+		int[] nextArc = new int[n];
+		int nextIndex = 0;
+		int numComponents = 0;
+
+		for (int root = 0; root < n; root++) {
+			if (index[root] >= 0) {
+				continue;
+			}
+			int depth = 0;
+			callStack[depth++] = root;
+			index[root] = low[root] = nextIndex++;
+			nextArc[root] = offsets[root];
+			stack[stackSize++] = root;
+			onStack[root] = true;
+
+			while (depth > 0) {
+				int v = callStack[depth - 1];
+				if (nextArc[v] < offsets[v + 1]) {
+					int w = targets[nextArc[v]++];
+					if (index[w] < 0) {
+						// Descend into w.
+						index[w] = low[w] = nextIndex++;
+						nextArc[w] = offsets[w];
+						stack[stackSize++] = w;
+						onStack[w] = true;
+						callStack[depth++] = w;
+					} else if (onStack[w]) {
+						low[v] = Math.min(low[v], index[w]);
+					}
+				} else {
+					// All arcs of v are done, return to the caller.
+					depth--;
+					if (depth > 0) {
+						int parent = callStack[depth - 1];
+						low[parent] = Math.min(low[parent], low[v]);
+					}
+					if (low[v] == index[v]) {
+						int w;
+						do {
+							w = stack[--stackSize];
+							onStack[w] = false;
+							component[w] = numComponents;
+						} while (w != v);
+						numComponents++;
+					}
+				}
+			}
+		}
+		return component;
+	}
+
+	public int getNumComponents() {
+		return numComponents;
+	}
+
+	/*
+	 * Component id of every dense vertex. Do not modify.
+	 */
+	public int[] getComponentIds() {
+		return component;
+	}
+
+	public int componentOf(int v) {
+		return component[v];
+	}
+
+	public int getSize(int c) {
+		bucket();
+		return start[c + 1] - start[c];
+	}
+
+	/*
+	 * Dense ids of the vertices of component c, ascending.
+	 */
+	public int[] getMembers(int c) {
+		bucket();
+		return Arrays.copyOfRange(members, start[c], start[c + 1]);
+	}
+
+	// Counting sort of the vertices by component.
+	private void bucket() {
+		if (members != null) {
+			return;
+		}
+		int n = component.length;
+		int[] first = new int[numComponents + 1];
+		for (int v = 0; v < n; v++) {
+			first[component[v] + 1]++;
+		}
+		for (int c = 0; c < numComponents; c++) {
+			first[c + 1] += first[c];
+		}
+		int[] sorted = new int[n];
+		int[] fill = Arrays.copyOf(first, numComponents);
+		for (int v = 0; v < n; v++) {
+			sorted[fill[component[v]]++] = v;
+		}
+		start = first;
+		members = sorted;
+	}
+
+	/*
+	 * Calls add.accept(u, v) for every edge inside component c, each
+	 * undirected edge once.
+	 */
+	private void forEachEdge(int c, int[] vertices, EdgeConsumer add) {
+		int[] offsets = graph.getOffsets();
+		int[] targets = graph.getTargets();
+		for (int v : vertices) {
+			for (int p = offsets[v]; p < offsets[v + 1]; p++) {
+				int w = targets[p];
+				if (component[w] == c && (graph.isDirected() || v < w)) {
+					add.accept(v, w);
+				}
+			}
+		}
+	}
+
+	private interface EdgeConsumer {
+		void accept(int u, int v);
+	}
+
+	/*
+	 * The subgraph induced by component c.
+	 */
+	public CSRGraph getComponentGraph(int c) {
+		int[] vertices = getMembers(c);
+		int[] labels = new int[vertices.length];
+		for (int i = 0; i < vertices.length; i++) {
+			labels[i] = graph.labelOf(vertices[i]);
+		}
+		IntList src = new IntList();
+		IntList dst = new IntList();
+		forEachEdge(c, vertices, (u, v) -> {
+			src.add(Arrays.binarySearch(vertices, u));
+			dst.add(Arrays.binarySearch(vertices, v));
+		});
+		return CSRGraph.fromDenseEdges(labels, src.array(), dst.array(), src.size(), graph.isDirected());
+	}
+
+	/*
+	 * The induced subgraph of every component, each built as a fresh graph
+	 * from 'factory' with addVertex and addEdge on the vertex labels.
+	 */
+	public List<Graph> getComponentGraphs(Supplier<? extends Graph> factory) {
+		List<Graph> graphList = new ArrayList<>(numComponents);
+		for (int c = 0; c < numComponents; c++) {
+			Graph g = factory.get();
+			int[] vertices = getMembers(c);
+			for (int v : vertices) {
+				g.addVertex(graph.labelOf(v));
+			}
+			forEachEdge(c, vertices, (u, v) -> g.addEdge(graph.labelOf(u), graph.labelOf(v)));
+			graphList.add(g);
+		}
+		return graphList;
+	}
+
+}
@@ -0,0 +1,161 @@
+package graph;
+
+import java.util.Arrays;
+
+import util.IntList;
+
+/**
+ * Undirected weighted graph in compressed sparse row form, with the weight
+ * of each vertex's self loop kept apart from its row. It is the working
+ * graph of the multilevel modularity methods: level 0 is the input graph
+ * with unit weights, and every further level has one vertex per community
+ * of the level below, with the edges inside a community folded into the
+ * self loop of its vertex.
+ *
+ * With this convention the strength of a vertex is the sum of its row plus
+ * twice its self loop, and the total weight m counts every edge once.
+ */
+class WeightedGraph {
+
+	final int n;
+	final int[] offsets;
+	final int[] targets;
+	final double[] weights;
+	final double[] selfLoops;
+	final double[] strength;
+	final double totalWeight;
+
+	private WeightedGraph(int n, int[] offsets, int[] targets, double[] weights, double[] selfLoops) {
+		this.n = n;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.weights = weights;
+		this.selfLoops = selfLoops;
+		this.strength = new double[n];
+		double total = 0;
+		for (int v = 0; v < n; v++) {
+			double sum = 2 * selfLoops[v];
+			for (int p = offsets[v]; p < offsets[v + 1]; p++) {
+				sum += weights[p];
+			}
+			strength[v] = sum;
+			total += sum;
+		}
+		this.totalWeight = total / 2;
+	}
+
+	/*
+	 * The graph itself with every edge of weight 1.
+	 */
+	static WeightedGraph fromCSR(CSRGraph graph) {
+		int n = graph.getNumNodes();
+		double[] weights = new double[graph.getNumArcs()];
+		Arrays.fill(weights, 1.0);
+		return new WeightedGraph(n, graph.getOffsets(), graph.getTargets(), weights, new double[n]);
+	}
+
+	/*
+	 * The graph with one vertex per community, where community[v] is in
+	 * 0..numCommunities-1. Two communities are joined by the total weight of
+	 * the edges between them and each has a self loop with the weight of the
+	 * edges inside it.
+	 */
+	WeightedGraph aggregate(int[] community, int numCommunities) {
+		// Members of every community, by a counting sort on community.
+		int[] start = new int[numCommunities + 1];
+		for (int v = 0; v < n; v++) {
+			start[community[v] + 1]++;
+		}
+		for (int c = 0; c < numCommunities; c++) {
+			start[c + 1] += start[c];
+		}
+		int[] members = new int[n];
+		int[] fill = Arrays.copyOf(start, numCommunities);
+		for (int v = 0; v < n; v++) {
+			members[fill[community[v]]++] = v;
+		}
+
+		int[] newOffsets = new int[numCommunities + 1];
+		IntList newTargets = new IntList();
+		double[] newWeights = new double[16];
+		double[] newSelfLoops = new double[numCommunities];
+
+		// Weight from the current community to each other one, with the list of those touched.
+		double[] linkWeight = new double[numCommunities];
+		int[] touched = new int[numCommunities];
+		for (int c = 0; c < numCommunities; c++) {
+			int numTouched = 0;
+			double self = 0;
+			for (int k = start[c]; k < start[c + 1]; k++) {
+				int v = members[k];
+				self += selfLoops[v];
+				for (int p = offsets[v]; p < offsets[v + 1]; p++) {
+					int d = community[targets[p]];
+					if (d == c) {
+						// Seen once from each end.
+						self += weights[p] / 2;
+					} else {
+						if (linkWeight[d] == 0) {
+							touched[numTouched++] = d;
+						}
+						linkWeight[d] += weights[p];
+					}
+				}
+			}
+			newSelfLoops[c] = self;
+			Arrays.sort(touched, 0, numTouched);
+			for (int k = 0; k < numTouched; k++) {
+				int d = touched[k];
+				int p = newTargets.size();
+				if (p == newWeights.length) {
+					newWeights = Arrays.copyOf(newWeights, p * 2);
+				}
+				newTargets.add(d);
+				newWeights[p] = linkWeight[d];
+				linkWeight[d] = 0;
+			}
+			newOffsets[c + 1] = newTargets.size();
+		}
+		return new WeightedGraph(numCommunities, newOffsets, newTargets.toArray(),
+				Arrays.copyOf(newWeights, newTargets.size()), newSelfLoops);
+	}
+
+	/*
+	 * Modularity of the partition where every vertex is on its own, which
+	 * is the modularity of the partition this graph was aggregated from.
+	 */
+	double singletonModularity() {
+		double q = 0;
+		double twoM = 2 * totalWeight;
+		for (int v = 0; v < n; v++) {
+			double a = strength[v] / twoM;
+			q += selfLoops[v] / totalWeight - a * a;
+		}
+		return q;
+	}
+
+	/*
+	 * Modularity of the partition of this graph given by community[v].
+	 */
+	double modularity(int[] community) {
+		double[] tot = new double[n];
+		double inside = 0;
+		for (int v = 0; v < n; v++) {
+			tot[community[v]] += strength[v];
+			inside += selfLoops[v];
+			for (int p = offsets[v]; p < offsets[v + 1]; p++) {
+				if (community[targets[p]] == community[v]) {
+					// Seen once from each end.
+					inside += weights[p] / 2;
+				}
+			}
+		}
+		double twoM = 2 * totalWeight;
+		double q = inside / totalWeight;
+		for (int c = 0; c < n; c++) {
+			q -= (tot[c] / twoM) * (tot[c] / twoM);
+		}
+		return q;
+	}
+
+}
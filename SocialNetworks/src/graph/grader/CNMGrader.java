@@ -0,0 +1,132 @@
+/**
+ * Checks the heaps of ClausetNewmanMoore against the pair scan that
+ * FastNewmanImpl used to run. Before every merge on each of the test graphs,
+ * dQ is computed with FastNewman.dQ() for every pair of communities joined
+ * by an edge. The merge must have the largest of those dQ, the pair it joins
+ * must have that dQ, and Q must go up by it.
+ *
+ */
+
+package graph.grader;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import util.GraphLoader;
+import graph.CSRGraph;
+import graph.ClausetNewmanMoore;
+import graph.FastNewman;
+
+public class CNMGrader extends Grader {
+
+    private static final String[] GRAPHS = { "small_test_graph.txt", "karate.txt", "football.txt",
+            "political_books.txt", "madrid_bombing.txt", "foodweb_big.txt" };
+    private static final int TESTS = GRAPHS.length;
+
+    // Allowed difference between dQ and Q of the two implementations
+    private static final double TOLERANCE = 1e-12;
+
+    @SuppressWarnings("deprecation")
+	public static void main(String[] args) {
+        Grader grader = new CNMGrader();
+        Thread thread = new Thread(grader);
+        thread.start();
+
+        // Safeguard against infinite loops
+        long endTime = System.currentTimeMillis() + 30000;
+        boolean infinite = false;
+        while (thread.isAlive()) {
+            if (System.currentTimeMillis() > endTime) {
+                thread.stop();
+                infinite = true;
+                break;
+            }
+        }
+        if (grader.correct < TESTS) {
+        		grader.feedback = "Some tests failed. Please check the following and try again:\n" + grader.feedback;
+        } else {
+        		grader.feedback = "All tests passed. Congrats!\n" + grader.feedback;
+        }
+        if (infinite) {
+            grader.feedback += "The checks entered an infinite loop or took longer than 30 seconds to finish.";
+        }
+        System.out.println(makeOutput((double)grader.correct / TESTS, grader.feedback));
+    }
+
+    /* Main grading method */
+    public void run() {
+        try {
+            for (int i = 0; i < TESTS; i++) {
+                feedback += appendFeedback(i + 1, "GRAPH: " + GRAPHS[i]);
+                CSRGraph graph = GraphLoader.loadCSRGraph("data/" + GRAPHS[i], false);
+                FastNewman fn = new FastNewman(graph);
+                ClausetNewmanMoore cnm = new ClausetNewmanMoore(graph);
+                boolean failed = false;
+
+                for (int step = 1; !failed; step++) {
+                    Map<Integer, List<Integer>> communities = cnm.getCommunities();
+                    double before = cnm.getModularity();
+                    double best = bestDeltaQ(graph, fn, communities);
+                    if (!cnm.mergeBest()) {
+                        if (best != Double.NEGATIVE_INFINITY) {
+                            feedback += "FAILED. Step " + step + " stopped although the pair scan still finds dQ "
+                                    + best + ".";
+                            failed = true;
+                        }
+                        break;
+                    }
+                    double deltaQ = cnm.getLastDeltaQ();
+                    List<Integer> first = communities.get(cnm.getLastFirst());
+                    List<Integer> second = communities.get(cnm.getLastSecond());
+                    if (Math.abs(deltaQ - best) > TOLERANCE) {
+                        feedback += "FAILED. Step " + step + " merged with dQ " + deltaQ + " but the pair scan finds "
+                                + best + ".";
+                        failed = true;
+                    } else if (Math.abs(fn.dQ(first, second) - deltaQ) > TOLERANCE) {
+                        feedback += "FAILED. Step " + step + " joined " + cnm.getLastFirst() + " and "
+                                + cnm.getLastSecond() + " whose dQ is " + fn.dQ(first, second) + ", not " + deltaQ + ".";
+                        failed = true;
+                    } else if (Math.abs(cnm.getModularity() - before - deltaQ) > TOLERANCE) {
+                        feedback += "FAILED. Step " + step + " moved Q from " + before + " to " + cnm.getModularity()
+                                + " with dQ " + deltaQ + ".";
+                        failed = true;
+                    }
+                }
+                if (!failed) {
+                    feedback += "PASSED.";
+                    correct += 1;
+                }
+            }
+        } catch (Exception e) {
+            feedback = "An error occurred during runtime.\n" + feedback + "\nError during runtime: " + e;
+            e.printStackTrace();
+        }
+    }
+
+    /* Largest dQ over the pairs of communities joined by an edge, by the pair scan */
+    private static double bestDeltaQ(CSRGraph graph, FastNewman fn, Map<Integer, List<Integer>> communities) {
+        Map<Integer, Integer> leaderOf = new HashMap<>();
+        for (Map.Entry<Integer, List<Integer>> entry : communities.entrySet()) {
+            for (int vertex : entry.getValue()) {
+                leaderOf.put(vertex, entry.getKey());
+            }
+        }
+        double best = Double.NEGATIVE_INFINITY;
+        for (Map.Entry<Integer, List<Integer>> entry : communities.entrySet()) {
+            Set<Integer> adjacent = new HashSet<>();
+            for (int vertex : entry.getValue()) {
+                for (int neighbor : graph.getNeighbors(vertex)) {
+                    adjacent.add(leaderOf.get(neighbor));
+                }
+            }
+            adjacent.remove(entry.getKey());
+            for (int other : adjacent) {
+                best = Math.max(best, fn.dQ(entry.getValue(), communities.get(other)));
+            }
+        }
+        return best;
+    }
+}
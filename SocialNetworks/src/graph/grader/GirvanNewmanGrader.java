@@ -0,0 +1,113 @@
+/**
+ * Checks the incremental betweenness of GirvanNewman against a full Brandes
+ * pass. At every iteration of a run on each of the test graphs, the edges
+ * that GirvanNewman cuts must be exactly the edges of maximum betweenness
+ * found by recomputing EdgeBetweenness from every source.
+ *
+ */
+
+package graph.grader;
+
+import java.util.Arrays;
+
+import util.GraphLoader;
+import graph.CSRGraph;
+import graph.EdgeBetweenness;
+import graph.GirvanNewman;
+
+public class GirvanNewmanGrader extends Grader {
+
+    private static final String[] GRAPHS = { "karate.txt", "football.txt", "political_books.txt",
+            "madrid_bombing.txt", "small3.txt", "citation.txt" };
+    private static final int TESTS = GRAPHS.length;
+
+    @SuppressWarnings("deprecation")
+	public static void main(String[] args) {
+        Grader grader = new GirvanNewmanGrader();
+        Thread thread = new Thread(grader);
+        thread.start();
+
+        // Safeguard against infinite loops
+        long endTime = System.currentTimeMillis() + 30000;
+        boolean infinite = false;
+        while (thread.isAlive()) {
+            if (System.currentTimeMillis() > endTime) {
+                thread.stop();
+                infinite = true;
+                break;
+            }
+        }
+        if (grader.correct < TESTS) {
+        		grader.feedback = "Some tests failed. Please check the following and try again:\n" + grader.feedback;
+        } else {
+        		grader.feedback = "All tests passed. Congrats!\n" + grader.feedback;
+        }
+        if (infinite) {
+            grader.feedback += "The checks entered an infinite loop or took longer than 30 seconds to finish.";
+        }
+        System.out.println(makeOutput((double)grader.correct / TESTS, grader.feedback));
+    }
+
+    /* Main grading method */
+    public void run() {
+        try {
+            for (int i = 0; i < TESTS; i++) {
+                feedback += appendFeedback(i + 1, "GRAPH: " + GRAPHS[i]);
+                CSRGraph graph = GraphLoader.loadCSRGraph("data/" + GRAPHS[i], false);
+                GirvanNewman gn = new GirvanNewman(graph);
+                EdgeBetweenness full = new EdgeBetweenness(graph);
+                boolean[] removed = new boolean[graph.getNumEdges()];
+                boolean failed = false;
+
+                // Cut edges until none is left, checking every iteration
+                for (int iteration = 1; gn.getNumRemainingEdges() > 0; iteration++) {
+                    int[] expected = maxBetweennessEdges(full.compute(removed), removed);
+                    int[] cut = gn.removeMaxBetweennessEdges();
+                    Arrays.sort(cut);
+                    if (!Arrays.equals(expected, cut)) {
+                        feedback += "FAILED. Iteration " + iteration + " cut " + edgesToString(gn, cut)
+                                + " but a full pass gives " + edgesToString(gn, expected) + ".";
+                        failed = true;
+                        break;
+                    }
+                    for (int e : cut) {
+                        removed[e] = true;
+                    }
+                }
+                if (!failed) {
+                    feedback += "PASSED.";
+                    correct += 1;
+                }
+            }
+        } catch (Exception e) {
+            feedback = "An error occurred during runtime.\n" + feedback + "\nError during runtime: " + e;
+            e.printStackTrace();
+        }
+    }
+
+    /* Ids of the remaining edges with the largest betweenness, ascending */
+    private static int[] maxBetweennessEdges(double[] betweenness, boolean[] removed) {
+        double max = 0;
+        for (int e = 0; e < betweenness.length; e++) {
+            if (!removed[e] && betweenness[e] > max) {
+                max = betweenness[e];
+            }
+        }
+        int count = 0;
+        int[] edges = new int[betweenness.length];
+        for (int e = 0; e < betweenness.length; e++) {
+            if (!removed[e] && betweenness[e] == max) {
+                edges[count++] = e;
+            }
+        }
+        return Arrays.copyOf(edges, count);
+    }
+
+    private static String edgesToString(GirvanNewman gn, int[] edges) {
+        String result = "";
+        for (int e : edges) {
+            result += gn.edgeToString(e) + " ";
+        }
+        return result.trim();
+    }
+}
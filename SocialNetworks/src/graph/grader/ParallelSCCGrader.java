@@ -0,0 +1,85 @@
+/**
+ * Checks the parallel mode of StronglyConnectedComponents against the
+ * sequential Tarjan pass. Both number the components by their lowest
+ * vertex, so on each of the test graphs, loaded as directed graphs, they
+ * must give every vertex the same component id.
+ *
+ */
+
+package graph.grader;
+
+import java.util.concurrent.ForkJoinPool;
+
+import util.GraphLoader;
+import graph.CSRGraph;
+import graph.StronglyConnectedComponents;
+
+public class ParallelSCCGrader extends Grader {
+
+    private static final String[] GRAPHS = { "small_test_graph.txt", "foodweb1.txt", "foodweb_big.txt",
+            "stmarks_foodweb.txt", "citation.txt", "facebook_2000.txt", "twitter_higgs.txt" };
+    private static final int TESTS = GRAPHS.length;
+
+    @SuppressWarnings("deprecation")
+	public static void main(String[] args) {
+        Grader grader = new ParallelSCCGrader();
+        Thread thread = new Thread(grader);
+        thread.start();
+
+        // Safeguard against infinite loops
+        long endTime = System.currentTimeMillis() + 30000;
+        boolean infinite = false;
+        while (thread.isAlive()) {
+            if (System.currentTimeMillis() > endTime) {
+                thread.stop();
+                infinite = true;
+                break;
+            }
+        }
+        if (grader.correct < TESTS) {
+        		grader.feedback = "Some tests failed. Please check the following and try again:\n" + grader.feedback;
+        } else {
+        		grader.feedback = "All tests passed. Congrats!\n" + grader.feedback;
+        }
+        if (infinite) {
+            grader.feedback += "The checks entered an infinite loop or took longer than 30 seconds to finish.";
+        }
+        System.out.println(makeOutput((double)grader.correct / TESTS, grader.feedback));
+    }
+
+    /* Main grading method */
+    public void run() {
+        try {
+            for (int i = 0; i < TESTS; i++) {
+                feedback += appendFeedback(i + 1, "GRAPH: " + GRAPHS[i]);
+                CSRGraph graph = GraphLoader.loadCSRGraph("data/" + GRAPHS[i], true);
+                StronglyConnectedComponents tarjan = new StronglyConnectedComponents(graph);
+                StronglyConnectedComponents parallel = new StronglyConnectedComponents(graph, ForkJoinPool.commonPool());
+
+                if (tarjan.getNumComponents() != parallel.getNumComponents()) {
+                    feedback += "FAILED. Tarjan found " + tarjan.getNumComponents() + " components, the parallel mode "
+                            + parallel.getNumComponents() + ".";
+                    continue;
+                }
+                int[] expected = tarjan.getComponentIds();
+                int[] result = parallel.getComponentIds();
+                boolean failed = false;
+                for (int v = 0; v < expected.length; v++) {
+                    if (expected[v] != result[v]) {
+                        feedback += "FAILED. Vertex " + graph.labelOf(v) + " is in component " + result[v]
+                                + ", Tarjan puts it in " + expected[v] + ".";
+                        failed = true;
+                        break;
+                    }
+                }
+                if (!failed) {
+                    feedback += "PASSED.";
+                    correct += 1;
+                }
+            }
+        } catch (Exception e) {
+            feedback = "An error occurred during runtime.\n" + feedback + "\nError during runtime: " + e;
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package util;
+
+import java.io.IOException;
+
+/**
+ * Keeps only the partition with the highest modularity, the earliest on
+ * ties, and passes it to another sink when closed. Only a level that
+ * improves on the best so far is copied.
+ */
+public class BestLevelSink implements PartitionSink {
+
+	private final PartitionSink target;
+
+	private int bestLevel = -1;
+	private double bestModularity = Double.NEGATIVE_INFINITY;
+	private int[] bestLabels;
+	private int[] bestMembership;
+
+	public BestLevelSink(PartitionSink target) {
+		this.target = target;
+	}
+
+	@Override
+	public void accept(int level, double modularity, int[] labels, int[] membership) {
+		if (modularity > bestModularity) {
+			bestLevel = level;
+			bestModularity = modularity;
+			bestLabels = labels.clone();
+			bestMembership = membership.clone();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			if (bestLevel >= 0) {
+				target.accept(bestLevel, bestModularity, bestLabels, bestMembership);
+			}
+		} finally {
+			target.close();
+		}
+	}
+
+}
@@ -0,0 +1,51 @@
+package util;
+
+import java.io.IOException;
+
+/**
+ * Writes the partitions in a compact little endian binary format:
+ *
+ *     int MAGIC, int VERSION, int n, int[n] labels
+ *     then per level: int level, double modularity, int[n] membership
+ *
+ * The labels are written once, with the first level, and every later level
+ * must be over the same vertices.
+ */
+public class BinaryPartitionSink implements PartitionSink {
+
+	public static final int MAGIC = 0x50415254;
+	public static final int VERSION = 1;
+
+	private final ChannelWriter out;
+	private int numVertices = -1;
+
+	public BinaryPartitionSink(ChannelWriter out) {
+		this.out = out;
+	}
+
+	@Override
+	public void accept(int level, double modularity, int[] labels, int[] membership) throws IOException {
+		if (numVertices < 0) {
+			numVertices = labels.length;
+			out.putInt(MAGIC);
+			out.putInt(VERSION);
+			out.putInt(numVertices);
+			for (int label : labels) {
+				out.putInt(label);
+			}
+		} else if (membership.length != numVertices) {
+			throw new IOException("Level " + level + " has " + membership.length + " vertices, not " + numVertices);
+		}
+		out.putInt(level);
+		out.putDouble(modularity);
+		for (int c : membership) {
+			out.putInt(c);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+}
@@ -0,0 +1,215 @@
+package util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Buffered writer to a channel that does the writing on its own thread.
+ *
+ * Values are encoded into one of a few fixed buffers. A full buffer is
+ * handed to the writer thread and the caller goes on with the next free one,
+ * so the compute thread only waits when every buffer is still being written.
+ * Binary values are little endian, as in MappedGraph.
+ *
+ * An IOException on the writer thread is thrown again by the next call on
+ * the writer, at the latest by close().
+ */
+public class ChannelWriter implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int NUM_BUFFERS = 4;
+
+	// Handed to the writer thread to make it stop.
+	private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+	private final WritableByteChannel channel;
+	private final boolean closeChannel;
+	private final BlockingQueue<ByteBuffer> full;
+	private final BlockingQueue<ByteBuffer> free;
+	private final Thread writer;
+	private volatile IOException failure;
+
+	// Buffer being filled by the caller.
+	private ByteBuffer current;
+	private final byte[] digits = new byte[20];
+	private boolean closed;
+
+	/*
+	 * Writes to the file 'path', replacing it if it exists.
+	 */
+	public ChannelWriter(Path path) throws IOException {
+		this(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE), true);
+	}
+
+	/*
+	 * Writes to 'channel', closing it on close() if 'closeChannel' is set.
+	 */
+	public ChannelWriter(WritableByteChannel channel, boolean closeChannel) {
+		this.channel = channel;
+		this.closeChannel = closeChannel;
+		this.full = new ArrayBlockingQueue<>(NUM_BUFFERS + 1);
+		this.free = new ArrayBlockingQueue<>(NUM_BUFFERS);
+		for (int i = 1; i < NUM_BUFFERS; i++) {
+			free.add(ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN));
+		}
+		this.current = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		this.writer = new Thread(this::drain, "ChannelWriter");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	// Body of the writer thread.
+	private void drain() {
+		try {
+			while (true) {
+				ByteBuffer buffer = full.take();
+				if (buffer == END) {
+					return;
+				}
+				if (failure == null) {
+					try {
+						while (buffer.hasRemaining()) {
+							channel.write(buffer);
+						}
+					} catch (IOException e) {
+						failure = e;
+					}
+				}
+				buffer.clear();
+				free.put(buffer);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void checkFailure() throws IOException {
+		if (failure != null) {
+			// A new exception each time, as the failure may be reported more than once.
+			throw new IOException("Write failed", failure);
+		}
+	}
+
+	// Makes room for 'bytes' more bytes in the current buffer.
+	private void ensure(int bytes) throws IOException {
+		if (current.remaining() < bytes) {
+			handOff();
+		}
+	}
+
+	// Passes the current buffer to the writer thread and takes a free one.
+	private void handOff() throws IOException {
+		checkFailure();
+		current.flip();
+		try {
+			full.put(current);
+			current = free.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a buffer");
+		}
+	}
+
+	public void putByte(int b) throws IOException {
+		ensure(1);
+		current.put((byte) b);
+	}
+
+	public void putInt(int value) throws IOException {
+		ensure(4);
+		current.putInt(value);
+	}
+
+	public void putLong(long value) throws IOException {
+		ensure(8);
+		current.putLong(value);
+	}
+
+	public void putDouble(double value) throws IOException {
+		ensure(8);
+		current.putDouble(value);
+	}
+
+	/*
+	 * Writes 'text' one byte per char, so it must be ASCII.
+	 */
+	public void putAscii(String text) throws IOException {
+		for (int i = 0; i < text.length(); i++) {
+			ensure(1);
+			current.put((byte) text.charAt(i));
+		}
+	}
+
+	/*
+	 * Writes 'value' in decimal without going through a String.
+	 */
+	public void putDecimal(long value) throws IOException {
+		if (value == Long.MIN_VALUE) {
+			putAscii(Long.toString(value));
+			return;
+		}
+		ensure(digits.length);
+		if (value < 0) {
+			current.put((byte) '-');
+			value = -value;
+		}
+		int count = 0;
+		do {
+			digits[count++] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value > 0);
+		while (count > 0) {
+			current.put(digits[--count]);
+		}
+	}
+
+	/*
+	 * Hands what has been written so far to the writer thread, without
+	 * waiting for it to be written.
+	 */
+	public void flush() throws IOException {
+		if (current.position() > 0) {
+			handOff();
+		}
+	}
+
+	/*
+	 * Writes out everything, stops the writer thread and closes the channel
+	 * if this writer owns it.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			// The writer thread is stopped even if it failed, so do not go through handOff().
+			if (failure == null && current.position() > 0) {
+				current.flip();
+				full.put(current);
+			}
+			full.put(END);
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while closing");
+		} finally {
+			if (closeChannel) {
+				channel.close();
+			}
+		}
+		checkFailure();
+	}
+
+}
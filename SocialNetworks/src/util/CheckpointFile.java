@@ -0,0 +1,160 @@
+package util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A checkpoint file that is rewritten in the background.
+ *
+ * The caller captures the state it wants to save in a Content, copying
+ * whatever it goes on changing, and hands it to submit(), which returns at
+ * once. A writer thread writes it to a temporary file next to the
+ * checkpoint, forces it to disk and moves it over the checkpoint in one
+ * atomic step, so the file on disk is always a complete checkpoint, the old
+ * or the new one, even if the JVM dies while writing.
+ *
+ * If contents are submitted faster than they are written, the ones waiting
+ * are replaced by the newest. A write error is thrown by the next call of
+ * submit() or await().
+ */
+public class CheckpointFile {
+
+	/**
+	 * State to write, in the little endian encoding of ChannelWriter.
+	 */
+	public interface Content {
+
+		public void writeTo(ChannelWriter out) throws IOException;
+
+	}
+
+	private final Path path;
+	private final Path temp;
+
+	// Next content to write and whether the writer thread is running.
+	private Content pending;
+	private boolean writing;
+	private Exception failure;
+	private long numWritten;
+
+	public CheckpointFile(Path path) {
+		this.path = path;
+		this.temp = path.resolveSibling(path.getFileName() + ".tmp");
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	/*
+	 * Schedules 'content' to be written, replacing any content still waiting.
+	 */
+	public synchronized void submit(Content content) throws IOException {
+		checkFailure();
+		pending = content;
+		if (!writing) {
+			writing = true;
+			Thread writer = new Thread(this::drain, "CheckpointFile");
+			writer.setDaemon(true);
+			writer.start();
+		}
+	}
+
+	/*
+	 * Waits until everything submitted so far is on disk.
+	 */
+	public synchronized void await() throws IOException {
+		try {
+			while (writing) {
+				wait();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a checkpoint");
+		}
+		checkFailure();
+	}
+
+	/*
+	 * Number of checkpoints written completely so far.
+	 */
+	public synchronized long getNumWritten() {
+		return numWritten;
+	}
+
+	private void checkFailure() throws IOException {
+		if (failure != null) {
+			Exception e = failure;
+			failure = null;
+			throw new IOException("Checkpoint " + path + " failed", e);
+		}
+	}
+
+	// Body of the writer thread, which runs while there is content waiting.
+	private void drain() {
+		while (true) {
+			Content content;
+			synchronized (this) {
+				content = pending;
+				pending = null;
+				if (content == null) {
+					writing = false;
+					notifyAll();
+					return;
+				}
+			}
+			try {
+				write(content);
+				synchronized (this) {
+					numWritten++;
+				}
+			} catch (IOException | RuntimeException e) {
+				// Kept for the caller; the thread goes on so that await() returns.
+				synchronized (this) {
+					failure = e;
+				}
+			}
+		}
+	}
+
+	private void write(Content content) throws IOException {
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			ChannelWriter out = new ChannelWriter(channel, false);
+			try {
+				content.writeTo(out);
+			} finally {
+				out.close();
+			}
+			channel.force(true);
+		}
+		Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/*
+	 * Reads a whole checkpoint file into a little endian buffer.
+	 */
+	public static ByteBuffer read(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException(path + " is over 2 GB");
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((int) channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) < 0) {
+					throw new IOException(path + " ended early");
+				}
+			}
+			buffer.flip();
+			return buffer;
+		}
+	}
+
+}
@@ -0,0 +1,215 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Reads an edge list file, two integer labels per line, into primitive
+ * arrays. A '#' starts a comment that runs to the end of its line, as in the
+ * headers of SNAP files. Any other text is an error, reported with its byte
+ * offset.
+ *
+ * The file is memory mapped and cut into chunks that end on a newline.
+ * The chunks are parsed in parallel on the common ForkJoinPool with a hand
+ * written digit loop instead of Scanner, and the results are concatenated
+ * in file order, so the edges come out in the same order as in the file.
+ */
+public class EdgeListParser {
+
+	// Size of the chunks handed to the parser tasks, before newline alignment.
+	private static final int CHUNK_SIZE = 4 << 20;
+
+	/**
+	 * The parsed edges: edge i goes from getFrom()[i] to getTo()[i].
+	 */
+	public static class Edges {
+
+		private final int[] from;
+		private final int[] to;
+
+		Edges(int[] from, int[] to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		public int[] getFrom() {
+			return from;
+		}
+
+		public int[] getTo() {
+			return to;
+		}
+
+		public int size() {
+			return from.length;
+		}
+	}
+
+	public static Edges parse(String filename) throws IOException {
+		long begin = System.nanoTime();
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			long[] bounds = chunkBounds(channel);
+			int numChunks = bounds.length - 1;
+			ChunkTask[] tasks = new ChunkTask[numChunks];
+			for (int c = 0; c < numChunks; c++) {
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, bounds[c], bounds[c + 1] - bounds[c]);
+				tasks[c] = new ChunkTask(buffer, bounds[c]);
+				tasks[c].fork();
+			}
+			int total = 0;
+			for (ChunkTask task : tasks) {
+				task.join();
+				if (task.error != null) {
+					throw new IOException(filename + ": " + task.error);
+				}
+				total += task.from.size();
+			}
+			int[] from = new int[total];
+			int[] to = new int[total];
+			int next = 0;
+			for (ChunkTask task : tasks) {
+				int size = task.from.size();
+				System.arraycopy(task.from.array(), 0, from, next, size);
+				System.arraycopy(task.to.array(), 0, to, next, size);
+				next += size;
+			}
+			Metrics.add(Metrics.Counter.LOADER_BYTES, bounds[numChunks]);
+			Metrics.record(Metrics.Timer.LOAD, System.nanoTime() - begin);
+			return new Edges(from, to);
+		}
+	}
+
+	/*
+	 * Start offsets of the chunks followed by the file size. Every chunk but
+	 * the last ends just after a newline.
+	 */
+	private static long[] chunkBounds(FileChannel channel) throws IOException {
+		long size = channel.size();
+		long[] bounds = new long[(int) (size / CHUNK_SIZE) + 2];
+		int numBounds = 1;
+		ByteBuffer window = ByteBuffer.allocate(4096);
+		long position = CHUNK_SIZE;
+		while (position < size) {
+			// Move position just past the next newline.
+			long newline = -1;
+			while (newline < 0 && position < size) {
+				window.clear();
+				int read = channel.read(window, position);
+				if (read <= 0) {
+					break;
+				}
+				for (int i = 0; i < read; i++) {
+					if (window.get(i) == '\n') {
+						newline = position + i;
+						break;
+					}
+				}
+				if (newline < 0) {
+					position += read;
+				}
+			}
+			if (newline < 0 || newline + 1 >= size) {
+				break;
+			}
+			bounds[numBounds++] = newline + 1;
+			position = newline + 1 + CHUNK_SIZE;
+		}
+		bounds[numBounds++] = size;
+		return Arrays.copyOf(bounds, numBounds);
+	}
+
+	/**
+	 * Parses one chunk. Errors are kept as a message rather than thrown, so
+	 * they can be reported as an IOException by parse().
+	 */
+	@SuppressWarnings("serial")
+	private static class ChunkTask extends RecursiveAction {
+
+		private final MappedByteBuffer buffer;
+		private final long offset;
+
+		final IntList from;
+		final IntList to;
+		String error;
+
+		ChunkTask(MappedByteBuffer buffer, long offset) {
+			this.buffer = buffer;
+			this.offset = offset;
+			// Edge lines hold two labels of a few digits each.
+			int expected = buffer.capacity() / 12 + 16;
+			this.from = new IntList(expected);
+			this.to = new IntList(expected);
+		}
+
+		@Override
+		protected void compute() {
+			int limit = buffer.limit();
+			long value = 0;
+			boolean negative = false;
+			boolean inNumber = false;
+			boolean haveFrom = false;
+			for (int i = 0; i < limit; i++) {
+				byte b = buffer.get(i);
+				if (b >= '0' && b <= '9') {
+					value = value * 10 + (b - '0');
+					if (value > (negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE)) {
+						error = "label too large at byte " + (offset + i);
+						return;
+					}
+					inNumber = true;
+				} else if (b == '-' && !inNumber && !negative) {
+					negative = true;
+				} else if (b == ' ' || b == '\n' || b == '\t' || b == '\r' || b == '#') {
+					if (negative && !inNumber) {
+						error = "'-' without digits at byte " + (offset + i);
+						return;
+					}
+					if (inNumber) {
+						int label = (int) (negative ? -value : value);
+						if (haveFrom) {
+							to.add(label);
+						} else {
+							from.add(label);
+						}
+						haveFrom = !haveFrom;
+						value = 0;
+						negative = false;
+						inNumber = false;
+					}
+					if (b == '#') {
+						// Skip the comment, leaving its newline for the next round.
+						while (i + 1 < limit && buffer.get(i + 1) != '\n') {
+							i++;
+						}
+					}
+				} else {
+					error = "unexpected character '" + (char) b + "' at byte " + (offset + i);
+					return;
+				}
+			}
+			if (negative && !inNumber) {
+				error = "'-' without digits at byte " + (offset + limit);
+				return;
+			}
+			if (inNumber) {
+				int label = (int) (negative ? -value : value);
+				if (haveFrom) {
+					to.add(label);
+				} else {
+					from.add(label);
+				}
+				haveFrom = !haveFrom;
+			}
+			if (haveFrom) {
+				error = "odd number of labels before byte " + (offset + limit);
+			}
+		}
+	}
+
+}
@@ -6,41 +6,90 @@
  */
 package util;
 
-import java.io.File;
+import java.util.BitSet;
 import java.util.HashSet;
-import java.util.Scanner;
 import java.util.Set;
 
+import graph.CSRGraph;
+import graph.MappedGraph;
+
 public class GraphLoader {
     /**
      * Loads graph with data from a file.
      * The file should consist of lines with 2 integers each, corresponding
-     * to a "from" vertex and a "to" vertex.
+     * to a "from" vertex and a "to" vertex. Lines starting with '#' are
+     * comments, and labels may be negative.
+     * 
+     * The file is parsed in parallel by EdgeListParser, but the graph is
+     * still built one addVertex and addEdge at a time, vertices in the order
+     * they first appear and edges in file order, as before. Building the
+     * Node and Edge objects is what a graph like CapGraph costs, so a bulk
+     * path saves little; loadCSRGraph is the bulk loader. Unlike the
+     * Scanner this replaces, any other text in the file is reported as an
+     * error and nothing is loaded.
      */ 
     public static void loadGraph(graph.Graph g, String filename) {
-        Set<Integer> seen = new HashSet<>();
-        Scanner sc;
+        EdgeListParser.Edges edges;
         try {
-            sc = new Scanner(new File(filename));
+            edges = EdgeListParser.parse(filename);
         } catch (Exception e) {
             e.printStackTrace();
             return;
         }
-        // Iterate over the lines in the file, adding new
-        // vertices as they are found and connecting them with edges.
-        while (sc.hasNextInt()) {
-            int v1 = sc.nextInt();
-            int v2 = sc.nextInt();
-            if (!seen.contains(v1)) {
+        int[] from = edges.getFrom();
+        int[] to = edges.getTo();
+        // Labels added so far; negative ones are rare enough for a HashSet.
+        BitSet seen = new BitSet();
+        Set<Integer> seenNegative = new HashSet<>();
+        // Add new vertices as they are found and connect them with edges.
+        for (int i = 0; i < edges.size(); i++) {
+            int v1 = from[i];
+            int v2 = to[i];
+            if (v1 >= 0 ? !seen.get(v1) : !seenNegative.contains(v1)) {
                 g.addVertex(v1);
-                seen.add(v1);
+                markSeen(v1, seen, seenNegative);
             }
-            if (!seen.contains(v2)) {
+            if (v2 >= 0 ? !seen.get(v2) : !seenNegative.contains(v2)) {
                 g.addVertex(v2);
-                seen.add(v2);
+                markSeen(v2, seen, seenNegative);
             }
             g.addEdge(v1, v2);
         }
-        sc.close();
+    }
+
+    private static void markSeen(int v, BitSet seen, Set<Integer> seenNegative) {
+        if (v >= 0) {
+            seen.set(v);
+        } else {
+            seenNegative.add(v);
+        }
+    }
+
+    /**
+     * Loads an edge list file, in the same format as loadGraph, straight
+     * into an immutable CSRGraph without building any Node or Edge objects.
+     */
+    public static CSRGraph loadCSRGraph(String filename, boolean directed) {
+        EdgeListParser.Edges edges;
+        try {
+            edges = EdgeListParser.parse(filename);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+        return CSRGraph.fromEdges(edges.getFrom(), edges.getTo(), edges.size(), directed);
+    }
+
+    /**
+     * Maps a binary snapshot written by MappedGraph.write, which is much
+     * faster than parsing the edge list it was made from.
+     */
+    public static MappedGraph loadMappedGraph(String filename) {
+        try {
+            return MappedGraph.open(filename);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
     }
 }
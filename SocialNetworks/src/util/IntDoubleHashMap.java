@@ -0,0 +1,170 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from non-negative int keys to double values with open addressing
+ * and linear probing, so sparse rows of numbers are not stored as boxed
+ * Integer and Double objects.
+ *
+ * The entries are visited by slot:
+ *
+ *     for (int slot = 0; slot < map.capacity(); slot++) {
+ *         if (map.isUsed(slot)) { ... map.keyAt(slot) ... map.valueAt(slot) ... }
+ *     }
+ *
+ * The map must not be changed while it is being visited this way.
+ */
+public class IntDoubleHashMap {
+
+	private static final int FREE = -1;
+
+	private int[] keys;
+	private double[] values;
+	private int size;
+	private int mask;
+
+	public IntDoubleHashMap() {
+		this(4);
+	}
+
+	public IntDoubleHashMap(int expected) {
+		int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+		keys = new int[capacity];
+		values = new double[capacity];
+		Arrays.fill(keys, FREE);
+		mask = capacity - 1;
+	}
+
+	private int slotOf(int key) {
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean containsKey(int key) {
+		int slot = slotOf(key);
+		while (keys[slot] != FREE) {
+			if (keys[slot] == key) {
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	/*
+	 * Value of 'key', or 'missing' if the key is not in the map.
+	 */
+	public double get(int key, double missing) {
+		int slot = slotOf(key);
+		while (keys[slot] != FREE) {
+			if (keys[slot] == key) {
+				return values[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return missing;
+	}
+
+	public void put(int key, double value) {
+		int slot = slotOf(key);
+		while (keys[slot] != FREE) {
+			if (keys[slot] == key) {
+				values[slot] = value;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		size++;
+		if (2 * size > keys.length) {
+			resize(keys.length * 2);
+		}
+	}
+
+	/*
+	 * Adds 'amount' to the value of 'key', treating a missing key as 0.
+	 */
+	public void add(int key, double amount) {
+		put(key, get(key, 0) + amount);
+	}
+
+	/*
+	 * Removes 'key' and returns true if it was in the map. The entries after
+	 * it in the same run are shifted back, so no tombstones are left behind.
+	 */
+	public boolean remove(int key) {
+		int slot = slotOf(key);
+		while (keys[slot] != key) {
+			if (keys[slot] == FREE) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		int hole = slot;
+		int next = (hole + 1) & mask;
+		while (keys[next] != FREE) {
+			int home = slotOf(keys[next]);
+			// Move the entry back unless its home lies cyclically in (hole, next].
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				keys[hole] = keys[next];
+				values[hole] = values[next];
+				hole = next;
+			}
+			next = (next + 1) & mask;
+		}
+		keys[hole] = FREE;
+		size--;
+		return true;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, FREE);
+		size = 0;
+	}
+
+	public int capacity() {
+		return keys.length;
+	}
+
+	public boolean isUsed(int slot) {
+		return keys[slot] != FREE;
+	}
+
+	public int keyAt(int slot) {
+		return keys[slot];
+	}
+
+	public double valueAt(int slot) {
+		return values[slot];
+	}
+
+	private void resize(int capacity) {
+		int[] oldKeys = keys;
+		double[] oldValues = values;
+		keys = new int[capacity];
+		values = new double[capacity];
+		Arrays.fill(keys, FREE);
+		mask = capacity - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != FREE) {
+				int slot = slotOf(oldKeys[i]);
+				while (keys[slot] != FREE) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+}
@@ -0,0 +1,69 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints, so building edge lists does not box
+ * every vertex label into an Integer.
+ */
+public class IntList {
+
+	private int[] data;
+	private int size;
+
+	public IntList() {
+		this(16);
+	}
+
+	public IntList(int capacity) {
+		data = new int[Math.max(capacity, 1)];
+		size = 0;
+	}
+
+	public void add(int value) {
+		if (size == data.length) {
+			data = Arrays.copyOf(data, data.length * 2);
+		}
+		data[size++] = value;
+	}
+
+	public void addAll(IntList other) {
+		if (size + other.size > data.length) {
+			data = Arrays.copyOf(data, Math.max(size + other.size, data.length * 2));
+		}
+		System.arraycopy(other.data, 0, data, size, other.size);
+		size += other.size;
+	}
+
+	public int get(int i) {
+		return data[i];
+	}
+
+	public void set(int i, int value) {
+		data[i] = value;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	/*
+	 * The backing array. Only the first size() entries are valid.
+	 */
+	public int[] array() {
+		return data;
+	}
+
+	public int[] toArray() {
+		return Arrays.copyOf(data, size);
+	}
+
+}
@@ -0,0 +1,140 @@
+package util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Process wide counters and timers of the community detection code, cheap
+ * enough to stay on all the time.
+ *
+ * Every counter and timer is a LongAdder, so threads adding at the same time
+ * do not contend on one cache line. The hot loops do not call in here for
+ * every vertex or edge: they count in a local variable and add the total
+ * once per source range, merge or file, which keeps the cost to a few adds
+ * per call of the algorithm rather than per step of its inner loops.
+ *
+ * The JFR events in the graph package give the same data per Girvan Newman
+ * iteration and per Clauset Newman Moore merge. They are only created once
+ * Flight Recorder has been started, see isRecording().
+ */
+public final class Metrics {
+
+	public enum Counter {
+		// Vertices reached and arcs looked at by the betweenness searches.
+		BFS_VERTICES,
+		EDGES_RELAXED,
+		// Modularity changes computed for a pair of communities.
+		DQ_EVALUATIONS,
+		MERGES,
+		// Pushes, pops and updates of the Clauset Newman Moore heaps.
+		HEAP_OPERATIONS,
+		LOADER_BYTES
+	}
+
+	public enum Timer {
+		BETWEENNESS_PASS,
+		GN_ITERATION,
+		CNM_MERGE,
+		LOAD
+	}
+
+	private static final LongAdder[] counters = adders(Counter.values().length);
+	private static final LongAdder[] timerCounts = adders(Timer.values().length);
+	private static final LongAdder[] timerNanos = adders(Timer.values().length);
+
+	private Metrics() {
+	}
+
+	private static LongAdder[] adders(int count) {
+		LongAdder[] adders = new LongAdder[count];
+		for (int i = 0; i < count; i++) {
+			adders[i] = new LongAdder();
+		}
+		return adders;
+	}
+
+	public static void add(Counter counter, long amount) {
+		counters[counter.ordinal()].add(amount);
+	}
+
+	public static long get(Counter counter) {
+		return counters[counter.ordinal()].sum();
+	}
+
+	/*
+	 * Records one timed call that took 'nanos' nanoseconds, as measured with
+	 * System.nanoTime().
+	 */
+	public static void record(Timer timer, long nanos) {
+		timerCounts[timer.ordinal()].increment();
+		timerNanos[timer.ordinal()].add(nanos);
+	}
+
+	public static long getCount(Timer timer) {
+		return timerCounts[timer.ordinal()].sum();
+	}
+
+	public static long getTotalNanos(Timer timer) {
+		return timerNanos[timer.ordinal()].sum();
+	}
+
+	/*
+	 * Loader throughput over all the files read so far, 0 before the first.
+	 */
+	public static double getLoaderBytesPerSecond() {
+		long nanos = getTotalNanos(Timer.LOAD);
+		return (nanos == 0) ? 0 : get(Counter.LOADER_BYTES) * 1e9 / nanos;
+	}
+
+	/*
+	 * True once a Flight Recorder recording has been started in this JVM,
+	 * from the command line or later with jcmd. Loading the first event class
+	 * costs a few hundred milliseconds even if nothing is recorded, so the
+	 * events are not even created before then.
+	 */
+	public static boolean isRecording() {
+		return FlightRecorder.isInitialized();
+	}
+
+	/*
+	 * Sets every counter and timer back to zero. Values added by other
+	 * threads while this runs may be lost or kept.
+	 */
+	public static void reset() {
+		for (LongAdder adder : counters) {
+			adder.reset();
+		}
+		for (int i = 0; i < timerCounts.length; i++) {
+			timerCounts[i].reset();
+			timerNanos[i].reset();
+		}
+	}
+
+	/*
+	 * One line per counter and timer that is not zero, for the drivers to print.
+	 */
+	public static String report() {
+		StringBuilder report = new StringBuilder();
+		for (Counter counter : Counter.values()) {
+			long value = get(counter);
+			if (value != 0) {
+				report.append(counter).append(' ').append(value).append('\n');
+			}
+		}
+		for (Timer timer : Timer.values()) {
+			long count = getCount(timer);
+			if (count != 0) {
+				long nanos = getTotalNanos(timer);
+				report.append(timer).append(' ').append(count).append(" calls, ")
+						.append(nanos / 1e9).append(" s, ")
+						.append(nanos / 1e3 / count).append(" us per call\n");
+			}
+		}
+		if (getCount(Timer.LOAD) != 0) {
+			report.append("LOADER_BYTES_PER_SECOND ").append((long) getLoaderBytesPerSecond()).append('\n');
+		}
+		return report.toString();
+	}
+
+}
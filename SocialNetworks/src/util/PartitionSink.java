@@ -0,0 +1,21 @@
+package util;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Destination for the partitions a community detector passes through.
+ *
+ * A detector calls accept() for every level it reports, and the caller that
+ * created the sink closes it once the run is over. The arrays are only
+ * valid during the call: labels[v] is the label of the dense vertex v and
+ * membership[v] its community id, in whatever numbering the detector uses.
+ */
+public interface PartitionSink extends Closeable {
+
+	/*
+	 * Receives the partition at 'level', whose modularity is 'modularity'.
+	 */
+	public void accept(int level, double modularity, int[] labels, int[] membership) throws IOException;
+
+}
@@ -0,0 +1,37 @@
+package util;
+
+import java.io.IOException;
+
+/**
+ * Writes every partition as text: a line "# level <level>\tQ <modularity>"
+ * followed by one "<label>\t<community>" line per vertex.
+ */
+public class TsvPartitionSink implements PartitionSink {
+
+	private final ChannelWriter out;
+
+	public TsvPartitionSink(ChannelWriter out) {
+		this.out = out;
+	}
+
+	@Override
+	public void accept(int level, double modularity, int[] labels, int[] membership) throws IOException {
+		out.putAscii("# level ");
+		out.putDecimal(level);
+		out.putAscii("\tQ ");
+		out.putAscii(Double.toString(modularity));
+		out.putByte('\n');
+		for (int v = 0; v < membership.length; v++) {
+			out.putDecimal(labels[v]);
+			out.putByte('\t');
+			out.putDecimal(membership[v]);
+			out.putByte('\n');
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+}